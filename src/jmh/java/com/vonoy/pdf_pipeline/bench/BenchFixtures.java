@@ -0,0 +1,97 @@
+package com.vonoy.pdf_pipeline.bench;
+
+import com.vonoy.pdf_pipeline.api.dto.Language;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import com.vonoy.pdf_pipeline.core.RenderMetrics;
+import com.vonoy.pdf_pipeline.render.FontProperties;
+import com.vonoy.pdf_pipeline.render.FontRegistry;
+import com.vonoy.pdf_pipeline.render.PodImageProcessor;
+import com.vonoy.pdf_pipeline.services.PdfService;
+import com.vonoy.pdf_pipeline.template.ArabicShaper;
+import com.vonoy.pdf_pipeline.template.LabelBundles;
+import com.vonoy.pdf_pipeline.template.StaticAssetCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+
+/** Construction des services hors contexte Spring, avec la même configuration que l'application. */
+final class BenchFixtures {
+
+    private BenchFixtures() { }
+
+    static SpringTemplateEngine templateEngine() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode(TemplateMode.HTML);
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine engine = new SpringTemplateEngine();
+        engine.setTemplateResolver(resolver);
+        return engine;
+    }
+
+    static PdfService pdfService() {
+        DefaultResourceLoader loader = new DefaultResourceLoader();
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        ArabicShaper shaper = new ArabicShaper(meters, 10000, 512);
+        return new PdfService(templateEngine(),
+                new FontRegistry(new FontProperties(), loader),
+                new StaticAssetCache(loader, false, List.of("images/logo.png")),
+                new LabelBundles(shaper),
+                shaper,
+                new PodImageProcessor(meters, new RenderExecutor(0, 16, Duration.ofSeconds(30), Duration.ofSeconds(5)), true, 2, 150, 180, 180, 0.8f),
+                new RenderMetrics(meters));
+    }
+
+    /** Preuve de livraison (invoice:v1) avec {@code images} photos POD. */
+    static PdfJobRequest proofRequest(int images) {
+        String photo = Base64.getEncoder().encodeToString(classpathBytes("static/images/proof_of_delivery.jpg"));
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("customerName", "Ali Hassan");
+        data.put("driverName", "Omar Khaled");
+        data.put("deliveryDate", "2025-01-02");
+        data.put("imageBase64List", Collections.nCopies(images, photo));
+        return new PdfJobRequest("invoice:v1", data, "bench.pdf", Language.Arabic, null, null, null, null);
+    }
+
+    /** Livraison partielle (delivery:v1) de {@code items} lignes, libellés arabes. */
+    static PdfJobRequest partialRequest(int items) {
+        List<Map<String, Object>> lines = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("lineId", i);
+            line.put("itemCode", "ITEM-" + i);
+            line.put("description", i % 2 == 0 ? "مناديل ورقية " + i : "Facial tissues " + i);
+            line.put("orderedQty", 10);
+            line.put("returnedQty", 1);
+            line.put("undeliveredQty", 0);
+            line.put("deliveredQty", 9);
+            lines.add(line);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("customerName", "Ali Hassan");
+        data.put("driverName", "Omar Khaled");
+        data.put("deliveryDate", "2025-01-02");
+        data.put("mode", "RETURN");
+        data.put("items", lines);
+        return new PdfJobRequest("delivery:v1", data, "bench.pdf", Language.Arabic, null, null, null, null);
+    }
+
+    static byte[] classpathBytes(String path) {
+        try (InputStream is = BenchFixtures.class.getClassLoader().getResourceAsStream(path)) {
+            if (is == null) throw new IllegalStateException("Missing classpath resource " + path);
+            return is.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.vonoy.pdf_pipeline.bench;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pic de heap utilisé pendant chaque itération : {@code heap.peak}, le maximum de
+ * {@link MemoryMXBean#getHeapMemoryUsage()} relevé toutes les millisecondes (après un GC en début
+ * d'itération), agrégé en maximum sur les itérations.
+ * {@code -prof com.vonoy.pdf_pipeline.bench.HeapPeakProfiler}
+ */
+public class HeapPeakProfiler implements InternalProfiler {
+
+    private static final MemoryMXBean MEMORY = ManagementFactory.getMemoryMXBean();
+
+    private final AtomicLong peak = new AtomicLong();
+    private volatile boolean sampling;
+    private Thread sampler;
+
+    @Override
+    public String getDescription() {
+        return "Peak used heap during each iteration (sampled every ms)";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        System.gc();
+        peak.set(used());
+        sampling = true;
+        sampler = new Thread(() -> {
+            while (sampling) {
+                peak.accumulateAndGet(used(), Math::max);
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "heap-peak-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams,
+                                                       IterationResult result) {
+        sampling = false;
+        try {
+            sampler.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        peak.accumulateAndGet(used(), Math::max);
+        return List.of(new ScalarResult("heap.peak", peak.get() / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX));
+    }
+
+    private static long used() {
+        return MEMORY.getHeapMemoryUsage().getUsed();
+    }
+}
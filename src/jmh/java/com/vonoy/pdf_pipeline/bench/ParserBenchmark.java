@@ -0,0 +1,116 @@
+package com.vonoy.pdf_pipeline.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vonoy.pdf_pipeline.parse.DefaultAnyDataParser;
+import com.vonoy.pdf_pipeline.transport.RawPayload;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DefaultAnyDataParser#parse} par format et par taille : {@code rows} lignes de commande
+ * (mêmes colonnes dans les quatre formats). Lancer avec {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class ParserBenchmark {
+
+    private static final String[] COLUMNS = { "lineId", "itemCode", "description", "orderedQty", "deliveredQty" };
+
+    @Param({"json", "xml", "csv", "xlsx"})
+    String format;
+
+    @Param({"100", "1000", "10000"})
+    int rows;
+
+    private final DefaultAnyDataParser parser = new DefaultAnyDataParser();
+    private byte[] payload;
+    private String contentType;
+
+    @Setup
+    public void setup() {
+        switch (format) {
+            case "json" -> { payload = json(); contentType = "application/json"; }
+            case "xml" -> { payload = xml(); contentType = "application/xml"; }
+            case "csv" -> { payload = csv(); contentType = "text/csv"; }
+            case "xlsx" -> {
+                payload = xlsx();
+                contentType = "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet";
+            }
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    @Benchmark
+    public JsonNode parse() {
+        return parser.parse(new RawPayload(new ByteArrayInputStream(payload), contentType, Map.of()));
+    }
+
+    private String[] row(int i) {
+        return new String[] { String.valueOf(i), "ITEM-" + i, "مناديل ورقية " + i, "10", "9" };
+    }
+
+    private byte[] json() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) sb.append(',');
+            String[] r = row(i);
+            sb.append('{');
+            for (int c = 0; c < COLUMNS.length; c++) {
+                if (c > 0) sb.append(',');
+                sb.append('"').append(COLUMNS[c]).append("\":\"").append(r[c]).append('"');
+            }
+            sb.append('}');
+        }
+        return sb.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] xml() {
+        StringBuilder sb = new StringBuilder("<items>");
+        for (int i = 0; i < rows; i++) {
+            String[] r = row(i);
+            sb.append("<item>");
+            for (int c = 0; c < COLUMNS.length; c++) {
+                sb.append('<').append(COLUMNS[c]).append('>').append(r[c]).append("</").append(COLUMNS[c]).append('>');
+            }
+            sb.append("</item>");
+        }
+        return sb.append("</items>").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] csv() {
+        StringBuilder sb = new StringBuilder(String.join(",", COLUMNS)).append('\n');
+        for (int i = 0; i < rows; i++) sb.append(String.join(",", row(i))).append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private byte[] xlsx() {
+        try (XSSFWorkbook wb = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = wb.createSheet("items");
+            Row header = sheet.createRow(0);
+            for (int c = 0; c < COLUMNS.length; c++) header.createCell(c).setCellValue(COLUMNS[c]);
+            for (int i = 0; i < rows; i++) {
+                Row r = sheet.createRow(i + 1);
+                String[] values = row(i);
+                for (int c = 0; c < values.length; c++) r.createCell(c).setCellValue(values[c]);
+            }
+            wb.write(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.vonoy.pdf_pipeline.bench;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.render.HtmlDocument;
+import com.vonoy.pdf_pipeline.services.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /pdf/partial selon le nombre de lignes : rendu complet, Thymeleaf seul, openhtmltopdf seul
+ * (HTML produit une fois au setup). Lancer avec {@code -prof gc} pour le taux d'allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PartialDeliveryBenchmark {
+
+    @Param({"10", "100", "1000"})
+    int items;
+
+    private PdfService service;
+    private PdfJobRequest request;
+    private HtmlDocument html;
+
+    @Setup
+    public void setup() {
+        service = BenchFixtures.pdfService();
+        request = BenchFixtures.partialRequest(items);
+        html = service.renderHtml(request, true);
+    }
+
+    @Benchmark
+    public void generatePartialDeliveryPdf(Blackhole bh) {
+        service.generatePartialDeliveryPdf(request, new PdfResponseBenchmark.DiscardingOutputStream(bh));
+    }
+
+    @Benchmark
+    public HtmlDocument thymeleaf() {
+        return service.renderHtml(request, true);
+    }
+
+    @Benchmark
+    public void convertHtmlToPdf(Blackhole bh) {
+        service.convertHtmlToPdf(html, new PdfResponseBenchmark.DiscardingOutputStream(bh));
+    }
+}
@@ -0,0 +1,66 @@
+package com.vonoy.pdf_pipeline.bench;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.services.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réponse bufferisée (ByteArrayOutputStream + toByteArray, ancien chemin du contrôleur)
+ * contre écriture directe dans le flux de sortie.
+ * <ul>
+ *   <li>{@code -prof gc} : {@code gc.alloc.rate.norm} donne les octets <em>alloués</em> par document
+ *       (débit d'allocation), pas la mémoire occupée ;</li>
+ *   <li>{@code -prof com.vonoy.pdf_pipeline.bench.HeapPeakProfiler} : {@code heap.peak}, le pic de heap
+ *       utilisé pendant l'itération ; à comparer avec un {@code -Xmx} fixé ({@code -jvmArgsAppend -Xmx256m}) ;</li>
+ *   <li>heap borné ({@code -jvmArgsAppend -Xmx48m}, en augmentant {@code images}) : le chemin qui échoue
+ *       le premier en OutOfMemoryError est celui qui retient le plus.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PdfResponseBenchmark {
+
+    @Param({"1", "20"})
+    int images;
+
+    private PdfService service;
+    private PdfJobRequest request;
+
+    @Setup
+    public void setup() {
+        service = BenchFixtures.pdfService();
+        request = BenchFixtures.proofRequest(images);
+    }
+
+    @Benchmark
+    public byte[] buffered() {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        service.generate(request, baos);
+        return baos.toByteArray();
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) {
+        service.generate(request, new DiscardingOutputStream(bh));
+    }
+
+    /** Simule le flux servlet : consomme les octets sans les retenir. */
+    static final class DiscardingOutputStream extends OutputStream {
+        private final Blackhole bh;
+
+        DiscardingOutputStream(Blackhole bh) { this.bh = bh; }
+
+        @Override public void write(int b) { bh.consume(b); }
+
+        @Override public void write(byte[] b, int off, int len) { bh.consume(b); }
+    }
+}
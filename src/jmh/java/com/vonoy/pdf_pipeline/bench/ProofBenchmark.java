@@ -0,0 +1,51 @@
+package com.vonoy.pdf_pipeline.bench;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.render.HtmlDocument;
+import com.vonoy.pdf_pipeline.services.PdfService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * /pdf (preuve de livraison) : {@code generate} complet, préparation du HTML seule
+ * (traitement des photos + Thymeleaf) et openhtmltopdf seul.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProofBenchmark {
+
+    @Param({"0", "1", "5"})
+    int images;
+
+    private PdfService service;
+    private PdfJobRequest request;
+    private HtmlDocument html;
+
+    @Setup
+    public void setup() {
+        service = BenchFixtures.pdfService();
+        request = BenchFixtures.proofRequest(images);
+        html = service.renderHtml(request, false);
+    }
+
+    @Benchmark
+    public void generate(Blackhole bh) {
+        service.generate(request, new PdfResponseBenchmark.DiscardingOutputStream(bh));
+    }
+
+    @Benchmark
+    public HtmlDocument html() {
+        return service.renderHtml(request, false);
+    }
+
+    @Benchmark
+    public void convertHtmlToPdf(Blackhole bh) {
+        service.convertHtmlToPdf(html, new PdfResponseBenchmark.DiscardingOutputStream(bh));
+    }
+}
@@ -0,0 +1,18 @@
+package com.vonoy.pdf_pipeline.api.dto;
+import jakarta.validation.constraints.NotBlank;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+
+/** Publipostage : un PDF par ligne d'un CSV / XLSX (transport "file"... ou fichier envoyé en multipart). */
+@Getter @Setter @AllArgsConstructor
+public class MailMergeRequest {
+    @NotBlank String apiKey;        // template utilisé pour chaque ligne (comme /pdf)
+    private Language language;
+    private boolean partial;        // rendu /pdf/partial
+    private SourceConfig source;    // absent si le fichier est envoyé en multipart ; config.sheet pour un XLSX
+    private String fileName;        // modèle du nom de chaque PDF, ex. "BL-{deliveryId}.pdf" (colonnes entre accolades)
+    private Output output;          // ZIP (défaut) ou FILES (un fichier par PDF dans pdf.output.dir)
+
+    public enum Output { ZIP, FILES }
+}
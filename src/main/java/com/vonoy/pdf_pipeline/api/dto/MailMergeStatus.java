@@ -0,0 +1,18 @@
+package com.vonoy.pdf_pipeline.api.dto;
+
+import java.time.Instant;
+
+public record MailMergeStatus(
+    String id,
+    PdfJobStatus.State status,
+    String apiKey,
+    MailMergeRequest.Output output,
+    Instant submittedAt,
+    Instant startedAt,
+    Instant finishedAt,
+    long rows,          // lignes lues (et soumises au rendu) jusqu'ici
+    Integer succeeded,  // renseignés quand status = DONE
+    Integer failed,
+    String fileName,    // ZIP ou répertoire, relatif à pdf.output.dir
+    String error        // renseigné quand status = FAILED
+) {}
@@ -13,4 +13,11 @@ public class PdfJobRequest {
     Map<String, Object> data;
     private String outputFileName;
     private Language language;
+
+    // Pipeline générique (core/PdfPipeline) : données récupérées via un transport plutôt que dans "data"
+    private SourceConfig source;
+    private Map<String, Object> params;
+    private OutputOptions output;
+    // Plusieurs sources (avec id / dependsOn), récupérées en parallèle quand elles sont indépendantes
+    private List<SourceConfig> sources;
 }
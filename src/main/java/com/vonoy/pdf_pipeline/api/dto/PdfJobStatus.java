@@ -0,0 +1,17 @@
+package com.vonoy.pdf_pipeline.api.dto;
+
+import java.time.Instant;
+
+public record PdfJobStatus(
+    String id,
+    State status,
+    String apiKey,
+    Instant submittedAt,
+    Instant startedAt,
+    Instant finishedAt,
+    String fileName,    // nom proposé au téléchargement
+    Long sizeBytes,     // renseigné quand status = DONE
+    String error        // renseigné quand status = FAILED
+) {
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+}
@@ -10,7 +10,8 @@ import java.util.Map;
 @Getter @Setter @AllArgsConstructor
 public class SourceConfig {
 
+    String id;                      // multi-sources : clé des données fusionnées, cible des dependsOn
     @NotBlank String type;          // "rest" | "soap" | "file"
     @NotNull Map<String,Object> config;
-    List<String> dependsOn ;           // réservé multi-sources
+    List<String> dependsOn ;        // multi-sources : ids des sources à récupérer avant celle-ci
 }
@@ -23,6 +23,7 @@ public class CorsConfig {
                         )
                         .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders("Server-Timing", "X-Pdf-Profile")
                         .allowCredentials(true);
             }
         };
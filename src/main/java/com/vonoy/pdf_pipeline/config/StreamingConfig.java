@@ -0,0 +1,42 @@
+package com.vonoy.pdf_pipeline.config;
+
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Threads qui exécutent les StreamingResponseBody : ils ne font qu'attendre le pool de rendu,
+ * on en prévoit donc autant que de demandes admissibles (pas de file cachée derrière l'admission).
+ */
+@Configuration
+public class StreamingConfig implements WebMvcConfigurer, DisposableBean {
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    private final Duration timeout;
+
+    public StreamingConfig(RenderExecutor renderExecutor,
+                           @Value("${pdf.render.response-timeout:120s}") Duration timeout) {
+        this.timeout = timeout;
+        executor.setCorePoolSize(renderExecutor.capacity());
+        executor.setMaxPoolSize(renderExecutor.capacity());
+        executor.setThreadNamePrefix("pdf-stream-");
+        executor.initialize();
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(executor);
+        configurer.setDefaultTimeout(timeout.toMillis());
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+}
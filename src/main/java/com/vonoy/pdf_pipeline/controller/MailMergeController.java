@@ -0,0 +1,101 @@
+package com.vonoy.pdf_pipeline.controller;
+
+import com.vonoy.pdf_pipeline.api.dto.MailMergeRequest;
+import com.vonoy.pdf_pipeline.api.dto.MailMergeStatus;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobStatus;
+import com.vonoy.pdf_pipeline.core.RenderRejectedException;
+import com.vonoy.pdf_pipeline.services.PdfMailMergeService;
+import jakarta.validation.Valid;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+@RestController
+@RequestMapping("/pdf/mail-merge")
+public class MailMergeController {
+
+    private final PdfMailMergeService mailMergeService;
+
+    public MailMergeController(PdfMailMergeService mailMergeService) {
+        this.mailMergeService = mailMergeService;
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Submits a mail-merge: one PDF per row of a CSV / XLSX source",
+        description = "The rows are read from \"source\" (e.g. the file transport) as a stream and rendered in the background "
+            + "with the template of \"apiKey\". Poll GET /pdf/mail-merge/{id}, then download GET /pdf/mail-merge/{id}/file "
+            + "(output=ZIP) or read the PDFs under mail-merge/{id}/ in the output directory (output=FILES)."
+    )
+    @io.swagger.v3.oas.annotations.responses.ApiResponses({
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "202", description = "Mail-merge accepted"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid request"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "429",
+            description = "Too many pending mail-merges, retry after the Retry-After delay"
+        )
+    })
+    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> submit(@Valid @RequestBody MailMergeRequest req) throws IOException {
+        return submit(req, null, null);
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Submits a mail-merge for an uploaded CSV / XLSX file",
+        description = "Same as the JSON variant; \"job\" holds the request (without source) and \"file\" the spreadsheet."
+    )
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> upload(@Valid @RequestPart("job") MailMergeRequest req,
+                                    @RequestPart("file") MultipartFile file) throws IOException {
+        return submit(req, file, file.getContentType());
+    }
+
+    private ResponseEntity<?> submit(MailMergeRequest req, InputStreamSource upload, String contentType) throws IOException {
+        try {
+            MailMergeStatus status = mailMergeService.submit(req, upload, contentType);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/pdf/mail-merge/" + status.id()))
+                    .body(status);
+        } catch (RenderRejectedException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .body("Busy: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<MailMergeStatus> status(@PathVariable String id) {
+        return ResponseEntity.of(mailMergeService.status(id));
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Downloads the ZIP of a finished mail-merge",
+        description = "404 if unknown, evicted or output=FILES, 409 (with the status) while it is not DONE."
+    )
+    @GetMapping("/{id}/file")
+    public ResponseEntity<?> file(@PathVariable String id) {
+        Optional<MailMergeStatus> status = mailMergeService.status(id);
+        if (status.isEmpty()) return ResponseEntity.notFound().build();
+        if (status.get().status() != PdfJobStatus.State.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status.get());
+        }
+        Optional<Path> file = mailMergeService.file(id);
+        if (file.isEmpty()) return ResponseEntity.notFound().build();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/zip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("mail-merge-" + id + ".zip").build().toString())
+                .body(new FileSystemResource(file.get()));
+    }
+}
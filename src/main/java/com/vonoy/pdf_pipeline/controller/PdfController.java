@@ -1,28 +1,54 @@
 package com.vonoy.pdf_pipeline.controller;
 
 import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.core.PdfResultCache;
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import com.vonoy.pdf_pipeline.core.RenderRejectedException;
+import com.vonoy.pdf_pipeline.core.RenderTrace;
+import com.vonoy.pdf_pipeline.render.ImagePart;
+import com.vonoy.pdf_pipeline.services.PdfBatchService;
+import com.vonoy.pdf_pipeline.services.PdfMergeService;
 import com.vonoy.pdf_pipeline.services.PdfService;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 
 import java.nio.charset.StandardCharsets;
-import java.util.Map;
+import java.util.List;
+import java.util.Locale;
 
 import org.springframework.http.*;
+import org.springframework.util.FastByteArrayOutputStream;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/pdf")
 public class PdfController {
 
     private final PdfService pdfService;
+    private final PdfBatchService batchService;
+    private final PdfMergeService mergeService;
+    private final RenderExecutor renderExecutor;
+    private final PdfResultCache resultCache;
 
-    public PdfController(PdfService pdfService) {
+    static final String SERVER_TIMING = "Server-Timing";
+    static final String TIMING_HEADER = "X-Pdf-Timing";
+    static final String PROFILE_HEADER = "X-Pdf-Profile";
+
+    public PdfController(PdfService pdfService, PdfBatchService batchService, PdfMergeService mergeService,
+                         RenderExecutor renderExecutor, PdfResultCache resultCache) {
         this.pdfService = pdfService;
+        this.batchService = batchService;
+        this.mergeService = mergeService;
+        this.renderExecutor = renderExecutor;
+        this.resultCache = resultCache;
     }
 
     @io.swagger.v3.oas.annotations.Operation(
         summary = "Generates a PDF and returns it as binary data",
-        description = "Receives a PdfJobRequest (JSON), generates a PDF in memory, and returns the PDF file directly in the HTTP response."
+        description = "Receives a PdfJobRequest (JSON), generates a PDF and streams it directly into the HTTP response. "
+            + "Use buffered=true when a Content-Length header is required."
     )
     @io.swagger.v3.oas.annotations.responses.ApiResponses({
         @io.swagger.v3.oas.annotations.responses.ApiResponse(
@@ -35,13 +61,116 @@ public class PdfController {
         @io.swagger.v3.oas.annotations.responses.ApiResponse(
             responseCode = "400",
             description = "Invalid request"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "429",
+            description = "Render queue full, retry after the Retry-After delay"
+        ),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "503",
+            description = "No render worker became available in time, retry after the Retry-After delay"
         )
     })
     @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<byte[]> generate(@Valid @RequestBody PdfJobRequest req) {
+    public ResponseEntity<StreamingResponseBody> generate(@Valid @RequestBody PdfJobRequest req,
+                                      @RequestParam(name = "buffered", defaultValue = "false") boolean buffered,
+                                      HttpServletRequest http) {
+        return render(req, List.of(), false, buffered || isHttp10(http), http);
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Generates a PDF from a multipart request",
+        description = "Same as POST /pdf, with the PdfJobRequest in the \"job\" part (application/json, "
+            + "application/x-jackson-smile or application/cbor) and the POD photos as raw binary \"images\" parts, "
+            + "added after data.imageBase64List."
+    )
+    @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> generateMultipart(@Valid @RequestPart("job") PdfJobRequest req,
+                                      @RequestPart(name = "images", required = false) List<MultipartFile> images,
+                                      @RequestParam(name = "buffered", defaultValue = "false") boolean buffered,
+                                      HttpServletRequest http) {
+        return render(req, imageParts(images), false, buffered || isHttp10(http), http);
+    }
+
+    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, path = "/partial")
+    public ResponseEntity<StreamingResponseBody> generatePartialDeliveryPdf(@Valid @RequestBody PdfJobRequest req,
+                                                        @RequestParam(name = "buffered", defaultValue = "false") boolean buffered,
+                                                        HttpServletRequest http) {
+        return render(req, List.of(), true, buffered || isHttp10(http), http);
+    }
+
+    @PostMapping(path = "/partial", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<StreamingResponseBody> generatePartialMultipart(@Valid @RequestPart("job") PdfJobRequest req,
+                                                        @RequestParam(name = "buffered", defaultValue = "false") boolean buffered,
+                                                        HttpServletRequest http) {
+        return render(req, List.of(), true, buffered || isHttp10(http), http);
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Generates several PDFs in one call and streams them back as a ZIP",
+        description = "Each PdfJobRequest is rendered in parallel on the render pool; ZIP entries are written as "
+            + "documents finish. manifest.json (last entry) lists every item with its status or error. "
+            + "partial=true renders every item like /pdf/partial. Up to pdf.batch.max-sync-items items: larger lots "
+            + "go through POST /pdf/jobs or POST /pdf/mail-merge. merge=true returns a single PDF instead "
+            + "(one bookmark per document; failed items are skipped), up to pdf.merge.max-sync-items documents: "
+            + "larger merges go through POST /pdf/jobs/merge."
+    )
+    @PostMapping(path = "/batch")
+    public ResponseEntity<StreamingResponseBody> generateBatch(@Valid @RequestBody List<@Valid PdfJobRequest> jobs,
+                                                               @RequestParam(name = "partial", defaultValue = "false") boolean partial,
+                                                               @RequestParam(name = "merge", defaultValue = "false") boolean merge) {
         try {
-            byte[] pdfBytes = pdfService.generate(req);
+            if (merge) {
+                mergeService.validateSync(jobs);
+                // La fusion est séquentielle dans un seul PDDocument : un seul worker, réservé avant le 200.
+                RenderExecutor.Admission.Worker worker = renderExecutor.tryAdmit().awaitWorker();
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.APPLICATION_PDF);
+                headers.setContentDisposition(ContentDisposition.inline().filename("merged.pdf").build());
+                StreamingResponseBody body = out -> worker.run(() -> {
+                    mergeService.merge(jobs, partial, out);
+                    return null;
+                });
+                return new ResponseEntity<>(body, headers, HttpStatus.OK);
+            }
+            batchService.validateSync(jobs);
+            // Le thread pdf-stream- du ZIP garde une place d'admission jusqu'à la fin (le pool de streaming est
+            // dimensionné sur la capacité), et le premier élément un worker : saturation = 429/503 avant le 200.
+            RenderExecutor.Admission stream = renderExecutor.tryAdmit();
+            RenderExecutor.Admission.Worker first;
+            try {
+                first = renderExecutor.tryAdmit().awaitWorker();
+            } catch (RuntimeException e) {
+                stream.close();
+                throw e;
+            }
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.parseMediaType("application/zip"));
+            headers.setContentDisposition(ContentDisposition.attachment().filename("batch.zip").build());
+            StreamingResponseBody body = out -> {
+                try (stream) {
+                    batchService.writeZip(jobs, partial, first, out);
+                }
+            };
+            return new ResponseEntity<>(body, headers, HttpStatus.OK);
+        } catch (RenderRejectedException e) {
+            return rejected(e);
+        } catch (IllegalArgumentException e) {
+            return text(ResponseEntity.status(HttpStatus.BAD_REQUEST), "Error: " + e.getMessage());
+        }
+    }
 
+    /**
+     * Par défaut le PDF est écrit directement dans le flux de la réponse (chunked), sans byte[].
+     * Le mode bufferisé (?buffered=true, ou client HTTP/1.0) ne sert que lorsqu'un Content-Length est requis.
+     * /pdf/partial avec cache actif : une demande identique est servie depuis le cache, sinon le PDF
+     * rendu en flux y est recopié.
+     * Diagnostic (?timing=true / X-Pdf-Timing, ?profile=true / X-Pdf-Profile) : rendu bufferisé hors cache,
+     * avec l'en-tête Server-Timing (et X-Pdf-Profile : pages, polices, images, taille du HTML).
+     */
+    private ResponseEntity<StreamingResponseBody> render(PdfJobRequest req, List<ImagePart> images,
+                                                         boolean partial, boolean buffered, HttpServletRequest http) {
+        try {
             String fileName = (req.getOutputFileName() == null || req.getOutputFileName().isBlank())
                     ? "result.pdf"
                     : (req.getOutputFileName().toLowerCase().endsWith(".pdf")
@@ -53,52 +182,151 @@ public class PdfController {
             headers.setContentDisposition(
                 ContentDisposition.inline().filename(fileName).build()
             );
-            headers.setContentLength(pdfBytes.length);
 
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+            // Les erreurs détectables (apiKey inconnue, file pleine) sont levées avant d'engager la réponse.
+            String templateId = pdfService.resolveTemplate(req.getApiKey());
+
+            boolean profile = flag(http, "profile", PROFILE_HEADER);
+            if (profile || flag(http, "timing", TIMING_HEADER)) {
+                RenderTrace trace = newTrace(http, profile);
+                byte[] pdfBytes = renderBuffered(req, images, partial, trace);
+                headers.setContentLength(pdfBytes.length);
+                headers.add(SERVER_TIMING, serverTiming(trace));
+                if (profile) headers.add(PROFILE_HEADER, profileSummary(trace));
+                return new ResponseEntity<>(out -> out.write(pdfBytes), headers, HttpStatus.OK);
+            }
 
+            if (partial && resultCache.isEnabled()) {
+                String key = resultCache.key(req, templateId, partial, images);
+                headers.setETag("\"" + key + "\"");
+                PdfResultCache.Fill fill = resultCache.open(key);
+                if (fill.cached() != null) {
+                    byte[] pdfBytes = fill.cached();
+                    headers.setContentLength(pdfBytes.length);
+                    return new ResponseEntity<>(out -> out.write(pdfBytes), headers, HttpStatus.OK);
+                }
+                try {
+                    return render(req, images, partial, buffered, http, headers, fill);
+                } catch (RuntimeException e) {
+                    fill.close();
+                    throw e;
+                }
+            }
+            return render(req, images, partial, buffered, http, headers, null);
+
+        } catch (RenderRejectedException e) {
+            return rejected(e);
         } catch (IllegalArgumentException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return text(ResponseEntity.status(HttpStatus.BAD_REQUEST), "Error: " + e.getMessage());
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(("Server error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return text(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR), "Server error: " + e.getMessage());
         }
     }
 
+    /** Rendu hors cache ; avec {@code fill}, le PDF est recopié au passage dans le cache. */
+    private ResponseEntity<StreamingResponseBody> render(PdfJobRequest req, List<ImagePart> images, boolean partial,
+                                                         boolean buffered, HttpServletRequest http,
+                                                         HttpHeaders headers, PdfResultCache.Fill fill) {
+        if (buffered) {
+            byte[] pdfBytes = renderBuffered(req, images, partial, newTrace(http, false));
+            if (fill != null) fill.complete(pdfBytes);
+            headers.setContentLength(pdfBytes.length);
+            return new ResponseEntity<>(out -> out.write(pdfBytes), headers, HttpStatus.OK);
+        }
 
+        // Worker obtenu avant d'engager le 200 : un dépassement de queue-timeout reste un 503 avec Retry-After.
+        long queued = System.nanoTime();
+        RenderExecutor.Admission.Worker worker = renderExecutor.tryAdmit().awaitWorker();
+        RenderTrace trace = newTrace(http, false);
+        trace.stage(RenderTrace.QUEUE, queued);
+        StreamingResponseBody body = out -> {
+            try {
+                worker.run(() -> {
+                    trace.begin();
+                    pdfService.write(req, partial, images, trace, fill != null ? fill.tee(out) : out);
+                    return null;
+                });
+                if (fill != null) fill.complete();
+            } finally {
+                if (fill != null) fill.close();
+            }
+        };
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
 
-    @PostMapping(produces = MediaType.APPLICATION_JSON_VALUE, path = "/partial")
-    public ResponseEntity<byte[]> generatePartialDeliveryPdf(@Valid @RequestBody PdfJobRequest req) {
-        try {
-            byte[] pdfBytes = pdfService.generatePartialDeliveryPdf(req);
+    private byte[] renderBuffered(PdfJobRequest req, List<ImagePart> images, boolean partial, RenderTrace trace) {
+        long queued = System.nanoTime();
+        return renderExecutor.execute(() -> {
+            trace.stage(RenderTrace.QUEUE, queued);
+            trace.begin();
+            FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+            pdfService.write(req, partial, images, trace, out);
+            return out.toByteArrayUnsafe();
+        });
+    }
 
-            String fileName = (req.getOutputFileName() == null || req.getOutputFileName().isBlank())
-                    ? "result.pdf"
-                    : (req.getOutputFileName().toLowerCase().endsWith(".pdf")
-                        ? req.getOutputFileName()
-                        : req.getOutputFileName() + ".pdf");
+    /** Taille du corps et durée de sa désérialisation, lues sur la requête avant de passer au thread de rendu. */
+    private static RenderTrace newTrace(HttpServletRequest http, boolean profile) {
+        RenderTrace trace = new RenderTrace(profile);
+        long inputBytes = http.getContentLengthLong();
+        if (inputBytes > 0) trace.size(RenderTrace.INPUT_BYTES, inputBytes);
+        long parseNanos = RequestParseTiming.nanos(http);
+        if (parseNanos > 0) trace.add(RenderTrace.PARSE, parseNanos);
+        return trace;
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_PDF);
-            headers.setContentDisposition(
-                ContentDisposition.inline().filename(fileName).build()
-            );
-            headers.setContentLength(pdfBytes.length);
+    private static boolean flag(HttpServletRequest http, String param, String header) {
+        return Boolean.parseBoolean(http.getParameter(param)) || Boolean.parseBoolean(http.getHeader(header));
+    }
 
-            return new ResponseEntity<>(pdfBytes, headers, HttpStatus.OK);
+    /** Ex. {@code parse;dur=3.1, context;dur=0.4, images;dur=210.5, template;dur=2.0, layout;dur=95.2, write;dur=40.7, total;dur=349.1}. */
+    static String serverTiming(RenderTrace trace) {
+        StringBuilder sb = new StringBuilder();
+        trace.stages().forEach((stage, nanos) -> sb.append(stage).append(";dur=").append(millis(nanos)).append(", "));
+        return sb.append("total;dur=").append(millis(trace.elapsedNanos())).toString();
+    }
 
-        } catch (IllegalArgumentException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .contentType(MediaType.TEXT_PLAIN)
-                    .body(("Server error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
-        }
+    /** Ex. {@code pages=3, fonts=2, images=5, imageBytes=925123, htmlLength=18234, inputBytes=..., outputBytes=...}. */
+    static String profileSummary(RenderTrace trace) {
+        StringBuilder sb = new StringBuilder();
+        trace.sizes().forEach((name, value) -> {
+            if (!sb.isEmpty()) sb.append(", ");
+            sb.append(name).append('=').append(value);
+        });
+        return sb.toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0);
+    }
+
+    /** Parties multipart passées telles quelles : Tomcat les garde sur disque, elles sont lues en flux au rendu. */
+    private static List<ImagePart> imageParts(List<MultipartFile> files) {
+        if (files == null) return List.of();
+        return files.stream()
+                .filter(f -> !f.isEmpty())
+                .map(f -> new ImagePart(f, f.getSize(), f.getContentType()))
+                .toList();
+    }
+
+    private static boolean isHttp10(HttpServletRequest http) {
+        return "HTTP/1.0".equalsIgnoreCase(http.getProtocol());
+    }
+
+    /** 429 si la file est pleine, 503 si l'attente d'un worker a expiré ; toujours avec Retry-After. */
+    private static ResponseEntity<StreamingResponseBody> rejected(RenderRejectedException e) {
+        HttpStatus status = e.getReason() == RenderRejectedException.Reason.QUEUE_FULL
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        return text(ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds())), "Busy: " + e.getMessage());
+    }
+
+    private static ResponseEntity<StreamingResponseBody> text(ResponseEntity.BodyBuilder builder, String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        return builder.contentType(MediaType.TEXT_PLAIN)
+                .contentLength(bytes.length)
+                .body(out -> out.write(bytes));
     }
 
 }
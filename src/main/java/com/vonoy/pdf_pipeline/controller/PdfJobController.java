@@ -0,0 +1,110 @@
+package com.vonoy.pdf_pipeline.controller;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobStatus;
+import com.vonoy.pdf_pipeline.core.RenderRejectedException;
+import com.vonoy.pdf_pipeline.services.PdfJobService;
+import jakarta.validation.Valid;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/pdf/jobs")
+public class PdfJobController {
+
+    private final PdfJobService jobService;
+
+    public PdfJobController(PdfJobService jobService) {
+        this.jobService = jobService;
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Submits a PDF job and returns its id immediately",
+        description = "The PDF is rendered in the background and stored in the output directory. "
+            + "Poll GET /pdf/jobs/{id} for the status, then download GET /pdf/jobs/{id}/file. "
+            + "partial=true renders like /pdf/partial. A request with a \"source\" goes through the generic pipeline."
+    )
+    @io.swagger.v3.oas.annotations.responses.ApiResponses({
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "202", description = "Job accepted"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(responseCode = "400", description = "Invalid request"),
+        @io.swagger.v3.oas.annotations.responses.ApiResponse(
+            responseCode = "429",
+            description = "Too many pending jobs, retry after the Retry-After delay"
+        )
+    })
+    @PostMapping
+    public ResponseEntity<?> submit(@Valid @RequestBody PdfJobRequest req,
+                                    @RequestParam(name = "partial", defaultValue = "false") boolean partial) {
+        try {
+            return accepted(jobService.submit(req, partial));
+        } catch (RenderRejectedException e) {
+            return busy(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Error: " + e.getMessage());
+        }
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Submits a merge job: the documents are rendered into one PDF in the background",
+        description = "Same body and result as /pdf/batch?merge=true, without the response time limit: "
+            + "up to pdf.merge.max-items documents (5000 by default). Poll GET /pdf/jobs/{id}, "
+            + "then download GET /pdf/jobs/{id}/file."
+    )
+    @PostMapping("/merge")
+    public ResponseEntity<?> submitMerge(@Valid @RequestBody List<@Valid PdfJobRequest> jobs,
+                                         @RequestParam(name = "partial", defaultValue = "false") boolean partial) {
+        try {
+            return accepted(jobService.submitMerge(jobs, partial));
+        } catch (RenderRejectedException e) {
+            return busy(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body("Error: " + e.getMessage());
+        }
+    }
+
+    private static ResponseEntity<?> accepted(PdfJobStatus status) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/pdf/jobs/" + status.id()))
+                .body(status);
+    }
+
+    private static ResponseEntity<?> busy(RenderRejectedException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .contentType(MediaType.TEXT_PLAIN)
+                .body("Busy: " + e.getMessage());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<PdfJobStatus> status(@PathVariable String id) {
+        return ResponseEntity.of(jobService.status(id));
+    }
+
+    @io.swagger.v3.oas.annotations.Operation(
+        summary = "Downloads the PDF of a finished job",
+        description = "404 if the job is unknown or already evicted, 409 (with the job status) while it is not DONE."
+    )
+    @GetMapping("/{id}/file")
+    public ResponseEntity<?> file(@PathVariable String id) {
+        Optional<PdfJobStatus> status = jobService.status(id);
+        if (status.isEmpty()) return ResponseEntity.notFound().build();
+        if (status.get().status() != PdfJobStatus.State.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(status.get());
+        }
+        Optional<Path> file = jobService.file(id);
+        if (file.isEmpty()) return ResponseEntity.notFound().build();
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_PDF)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename(status.get().fileName()).build().toString())
+                .body(new FileSystemResource(file.get()));
+    }
+}
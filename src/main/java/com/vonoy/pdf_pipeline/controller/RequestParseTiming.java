@@ -0,0 +1,53 @@
+package com.vonoy.pdf_pipeline.controller;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+/**
+ * Mesure la désérialisation d'un PdfJobRequest (JSON, Smile, CBOR, partie "job" d'un multipart),
+ * reprise dans l'étape "parse" de l'en-tête Server-Timing.
+ */
+@ControllerAdvice
+public class RequestParseTiming extends RequestBodyAdviceAdapter {
+
+    private static final String START = RequestParseTiming.class.getName() + ".start";
+    private static final String NANOS = RequestParseTiming.class.getName() + ".nanos";
+
+    @Override
+    public boolean supports(MethodParameter parameter, Type targetType,
+                            Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType == PdfJobRequest.class;
+    }
+
+    @Override
+    public HttpInputMessage beforeBodyRead(HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                           Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestContextHolder.currentRequestAttributes()
+                .setAttribute(START, System.nanoTime(), RequestAttributes.SCOPE_REQUEST);
+        return inputMessage;
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        RequestAttributes attributes = RequestContextHolder.currentRequestAttributes();
+        if (attributes.getAttribute(START, RequestAttributes.SCOPE_REQUEST) instanceof Long start) {
+            attributes.setAttribute(NANOS, System.nanoTime() - start, RequestAttributes.SCOPE_REQUEST);
+        }
+        return body;
+    }
+
+    /** Durée de désérialisation du corps, 0 si inconnue. */
+    static long nanos(HttpServletRequest http) {
+        return http.getAttribute(NANOS) instanceof Long nanos ? nanos : 0;
+    }
+}
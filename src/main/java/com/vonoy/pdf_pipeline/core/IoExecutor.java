@@ -0,0 +1,84 @@
+package com.vonoy.pdf_pipeline.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+
+/**
+ * Exécuteur des appels bloquants aux transports (REST, SOAP, fichiers), séparé de {@link RenderExecutor} :
+ * un amont lent n'occupe jamais un worker openhtmltopdf/PDFBox, dont le pool reste dimensionné aux cœurs.
+ * Threads virtuels si la JVM les fournit (Java 21+, {@code pdf.io.virtual-threads}), sinon threads
+ * plateforme bornés à {@code pdf.io.max-threads}.
+ */
+@Slf4j
+@Component
+public class IoExecutor implements DisposableBean {
+
+    private final ExecutorService executor;
+    private final boolean virtual;
+
+    public IoExecutor(@Value("${pdf.io.virtual-threads:true}") boolean virtualThreads,
+                      @Value("${pdf.io.max-threads:64}") int maxThreads) {
+        ExecutorService vt = virtualThreads ? virtualThreadExecutor() : null;
+        this.virtual = vt != null;
+        if (vt != null) {
+            this.executor = vt;
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(maxThreads, maxThreads, 30L, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), RenderExecutor.namedThreads("pdf-io-"));
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+        }
+        log.info("Transport I/O executor: {}", virtual ? "virtual threads" : maxThreads + " platform thread(s)");
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        executor.execute(() -> {
+            try {
+                result.complete(task.call());
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return result;
+    }
+
+    /** Exécute {@code task} sur l'exécuteur I/O et attend son résultat ; les exceptions sont relancées telles quelles. */
+    public <T> T call(Callable<T> task) {
+        CompletableFuture<T> future = submit(task);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new RuntimeException(cause.getMessage(), cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Transport call interrupted", e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /** Executors.newVirtualThreadPerTaskExecutor() par réflexion : le projet compile toujours en Java 17. */
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
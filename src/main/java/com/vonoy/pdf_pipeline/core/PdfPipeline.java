@@ -1,147 +1,268 @@
-// package com.vonoy.pdf_pipeline.core;
-
-// import com.fasterxml.jackson.databind.JsonNode;
-// import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
-// import com.vonoy.pdf_pipeline.api.dto.PdfSaveResult;
-// import com.vonoy.pdf_pipeline.normalize.NormalizedData;
-// import com.vonoy.pdf_pipeline.normalize.NormalizedValidator;
-// import com.vonoy.pdf_pipeline.normalize.Normalizer;
-// import com.vonoy.pdf_pipeline.parse.AnyDataParser;
-// import com.vonoy.pdf_pipeline.render.PdfRenderer;
-// import com.vonoy.pdf_pipeline.template.HtmlRenderer;
-// import com.vonoy.pdf_pipeline.template.TemplateResolver;
-// import com.vonoy.pdf_pipeline.transport.RawPayload;
-// import com.vonoy.pdf_pipeline.transport.TransportClient;
-// import com.vonoy.pdf_pipeline.transport.TransportRegistry;
-
-// import org.slf4j.MDC;
-// import org.springframework.beans.factory.annotation.Value;
-// import org.springframework.stereotype.Service;
-
-// import java.nio.file.Files;
-// import java.nio.file.Path;
-// import java.util.List;
-// import java.util.Map;
-// import java.util.UUID;
-
-// @Service
-// public class PdfPipeline {
-
-//     private final TransportRegistry transports;
-//     private final AnyDataParser parser;
-
-//     // On garde ces champs pour ne pas casser l’injection Spring si déjà configurée,
-//     // mais on ne les utilise plus.
-//     @SuppressWarnings("unused")
-//     private final List<Normalizer> normalizers;
-
-//     @SuppressWarnings("unused")
-//     private final NormalizedValidator validator;
-
-//     private final TemplateResolver templates;
-//     private final HtmlRenderer html;
-//     private final PdfRenderer pdf;
-
-//     @Value("${pdf.output.dir:./results}")
-//     private String outputDir;
-
-//     public PdfPipeline(TransportRegistry transports,
-//                        AnyDataParser parser,
-//                        List<Normalizer> normalizers,          // injecté mais ignoré
-//                        NormalizedValidator validator,         // injecté mais ignoré
-//                        TemplateResolver templates,
-//                        HtmlRenderer html,
-//                        PdfRenderer pdf) {
-//         this.transports = transports;
-//         this.parser = parser;
-//         this.normalizers = normalizers;
-//         this.validator = validator;
-//         this.templates = templates;
-//         this.html = html;
-//         this.pdf = pdf;
-//     }
-
-//     public byte[] execute(PdfJobRequest req) {
-//     String cid = UUID.randomUUID().toString();
-//     MDC.put("cid", cid);
-//     try {
-//         // 1) Transport
-//         TransportClient client = transports.get(req.getSource().getType());
-//         RawPayload payload = client.fetch(req.getSource().getConfig(), req.getParams());
-//         System.out.println("terminate transport");
-
-//         // 2) Parse (ok même si non utilisé)
-//         JsonNode root = parser.parse(payload);
-//         System.out.println("terminate parse");
-
-//         // 3) Pas de normalisation : modèle = params (ou vide)
-//         Map<String, Object> params = (req.getParams() == null) ? Map.of() : req.getParams();
-//         NormalizedData model = new NormalizedData(params);
-//         System.out.println("skip normalize");
-
-//         // 4) Pas de validation
-//         System.out.println("skip validate");
-
-//         // 5) Choix du HTML ou template
-//         String htmlStr = null;
-
-//         // 5.a) Si on passe du HTML brut dans la requête -> utiliser tel quel
-//         Object rawHtml = model.fields().get("html");
-//         if (rawHtml instanceof String rh && !rh.isBlank()) {
-//             System.out.println("skip template (using raw HTML from params.html)");
-//             htmlStr = rh;
-//         } else {
-//             // 5.b) Sinon on regarde si un templateId est donné dans params
-//             String templateId = null;
-//             Object tid = model.fields().get("templateId");
-//             if (tid instanceof String s && !s.isBlank()) {
-//                 templateId = s;
-//                 System.out.println("using templateId from params: " + templateId);
-//             } else {
-//                 // 5.c) Fallback: on utilise le resolver à partir de l'apiKey
-//                 templateId = templates.resolve(req.getApiKey(), model);
-//                 System.out.println("using templateId from resolver: " + templateId);
-//             }
-
-//             // 6) Rendu HTML via le moteur (Thymeleaf ou FreeMarker selon ton HtmlRenderer)
-//             htmlStr = html.render(templateId, model.fields());
-//             System.out.println("terminate html");
-//         }
-
-//         // 7) PDF
-//         return pdf.render(htmlStr);
-
-//     } catch (RuntimeException ex) {
-//         throw new RuntimeException("PDF generation failed: " + ex.getMessage(), ex);
-//     } finally {
-//         MDC.remove("cid");
-//     }
-// }
-
-
-//     public PdfSaveResult executeToFile(PdfJobRequest req) {
-//         byte[] pdfBytes = execute(req);
-
-//         try {
-//             // 1) s’assurer que le dossier existe
-//             Path outDir = Path.of(outputDir).toAbsolutePath().normalize();
-//             Files.createDirectories(outDir);
-
-//             // 2) nom de fichier (force .pdf si absent)
-//             String rawName = (req.getOutput() != null && req.getOutput().getFileName() != null)
-//                     ? req.getOutput().getFileName()
-//                     : ("document-" + UUID.randomUUID());
-//             String fileName = rawName.toLowerCase().endsWith(".pdf") ? rawName : rawName + ".pdf";
-
-//             // 3) chemin final
-//             Path outFile = outDir.resolve(fileName);
-
-//             // 4) écrire
-//             Files.write(outFile, pdfBytes);
-
-//             return new PdfSaveResult(fileName, outFile.toString(), pdfBytes.length);
-//         } catch (Exception e) {
-//             throw new RuntimeException("Failed to write PDF file: " + e.getMessage(), e);
-//         }
-//     }
-// }
+package com.vonoy.pdf_pipeline.core;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.api.dto.PdfSaveResult;
+import com.vonoy.pdf_pipeline.api.dto.SourceConfig;
+import com.vonoy.pdf_pipeline.normalize.NormalizedData;
+import com.vonoy.pdf_pipeline.normalize.NormalizedValidator;
+import com.vonoy.pdf_pipeline.normalize.Normalizer;
+import com.vonoy.pdf_pipeline.parse.AnyDataParser;
+import com.vonoy.pdf_pipeline.render.PdfRenderer;
+import com.vonoy.pdf_pipeline.template.HtmlRenderer;
+import com.vonoy.pdf_pipeline.template.TemplateResolver;
+import com.vonoy.pdf_pipeline.transport.RawPayload;
+import com.vonoy.pdf_pipeline.transport.TransportClient;
+import com.vonoy.pdf_pipeline.transport.TransportRegistry;
+
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FastByteArrayOutputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@Slf4j
+@Service
+public class PdfPipeline {
+
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() { };
+
+    private final TransportRegistry transports;
+    private final AnyDataParser parser;
+    private final List<Normalizer> normalizers;
+    private final NormalizedValidator validator;
+
+    private final TemplateResolver templates;
+    private final HtmlRenderer html;
+    private final PdfRenderer pdf;
+    private final PdfResultStore results;
+    private final RenderMetrics metrics;
+    private final IoExecutor io;
+    private final ObjectMapper mapper;
+
+    public PdfPipeline(TransportRegistry transports,
+                       AnyDataParser parser,
+                       List<Normalizer> normalizers,
+                       NormalizedValidator validator,
+                       TemplateResolver templates,
+                       HtmlRenderer html,
+                       PdfRenderer pdf,
+                       PdfResultStore results,
+                       RenderMetrics metrics,
+                       IoExecutor io,
+                       ObjectMapper mapper) {
+        this.transports = transports;
+        this.parser = parser;
+        this.normalizers = normalizers;
+        this.validator = validator;
+        this.templates = templates;
+        this.html = html;
+        this.pdf = pdf;
+        this.results = results;
+        this.metrics = metrics;
+        this.io = io;
+        this.mapper = mapper;
+    }
+
+    public byte[] execute(PdfJobRequest req) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        execute(req, out);
+        return out.toByteArrayUnsafe();
+    }
+
+    /** Transport -> parse -> template -> PDF, écrit directement dans {@code out}. */
+    public void execute(PdfJobRequest req, OutputStream out) {
+        render(prepare(req), out);
+    }
+
+    /**
+     * Transport -> parse -> template, sans toucher au pool de rendu : le fetch et le parse (qui consomme
+     * le flux du transport) tournent sur {@link IoExecutor}, l'appelant n'admet le rendu PDF qu'ensuite.
+     */
+    public Prepared prepare(PdfJobRequest req) {
+        if (!hasSource(req)) {
+            throw new IllegalArgumentException("Missing source");
+        }
+        checkParams(req);
+        String cid = UUID.randomUUID().toString();
+        MDC.put("cid", cid);
+        RenderTrace trace = new RenderTrace();
+        try {
+            // 1-2) Transport + parse ; les octets lus donnent la taille du payload.
+            // Sources multiples : un seul arbre {id: données} ({@link SourceGraph}).
+            Map<String, Object> params = (req.getParams() == null) ? Map.of() : req.getParams();
+            boolean multiple = req.getSources() != null && !req.getSources().isEmpty();
+            JsonNode root = multiple
+                    ? fetchAll(req, trace)
+                    : io.call(() -> fetchAndParse(req.getSource(), params, trace));
+
+            // 3) Normalisation selon l'apiKey
+            long t0 = System.nanoTime();
+            NormalizedData model = normalize(req.getApiKey(), root, params, multiple);
+            trace.stage(RenderTrace.CONTEXT, t0);
+
+            // 4) Validation
+            validator.validate(model, req.getApiKey());
+
+            // 5) Template de l'apiKey (jamais choisi par l'appelant)
+            String templateId = templates.resolve(req.getApiKey(), model);
+            log.debug("using templateId from resolver: {}", templateId);
+
+            // 6) Rendu HTML via le moteur (Thymeleaf ou FreeMarker selon ton HtmlRenderer)
+            t0 = System.nanoTime();
+            String htmlStr = html.render(templateId, model.fields());
+            trace.stage(RenderTrace.TEMPLATE, t0);
+            log.debug("terminate html");
+            trace.size(RenderTrace.HTML_LENGTH, htmlStr.length());
+            return new Prepared(req, htmlStr, trace);
+
+        } catch (RuntimeException ex) {
+            throw failed(ex);
+        } finally {
+            MDC.remove("cid");
+        }
+    }
+
+    /** 7) PDF : à exécuter sur le pool de rendu. */
+    public void render(Prepared prepared, OutputStream out) {
+        try {
+            RenderTrace trace = prepared.trace();
+            pdf.render(prepared.html(), out, trace);
+            metrics.record("pipeline", prepared.req().getApiKey(), prepared.req().getLanguage(), trace);
+        } catch (RuntimeException ex) {
+            throw failed(ex);
+        }
+    }
+
+    /**
+     * Modèle du template : sortie du premier {@link Normalizer} de l'apiKey (params inclus), sinon les données
+     * telles quelles (champs d'un objet, ou {@code data} pour un tableau) complétées par les params.
+     * Sources multiples : l'arbre fusionné est aussi exposé dans {@code sources}.
+     */
+    private NormalizedData normalize(String apiKey, JsonNode root, Map<String, Object> params, boolean multiple) {
+        Map<String, Object> normParams = new LinkedHashMap<>(params);
+        if (apiKey != null) normParams.putIfAbsent("apiKey", apiKey);
+        for (Normalizer n : normalizers) {
+            if (n.supports(apiKey)) {
+                Map<String, Object> fields = new LinkedHashMap<>(n.normalize(root, normParams).fields());
+                if (multiple) fields.putIfAbsent("sources", mapper.convertValue(root, MAP));
+                return new NormalizedData(fields);
+            }
+        }
+        Map<String, Object> fields = new LinkedHashMap<>();
+        if (root != null && root.isObject()) {
+            fields.putAll(mapper.convertValue(root, MAP));
+        } else if (root != null && !root.isMissingNode() && !root.isNull()) {
+            fields.put("data", mapper.convertValue(root, Object.class));
+        }
+        if (multiple) fields.put("sources", mapper.convertValue(root, MAP));
+        fields.putAll(params);
+        return new NormalizedData(fields);
+    }
+
+    /**
+     * Refuse {@code params.html} et {@code params.templateId} : du HTML de l'appelant ferait charger par
+     * openhtmltopdf des URI arbitraires (file:, hôtes internes) et un templateId ouvrirait n'importe quel
+     * template. Le template est toujours celui de l'apiKey.
+     */
+    public static void checkParams(PdfJobRequest req) {
+        Map<String, Object> params = req.getParams();
+        if (params == null) return;
+        for (String forbidden : List.of("html", "templateId")) {
+            if (params.containsKey(forbidden)) {
+                throw new IllegalArgumentException("params." + forbidden + " is not supported: the template comes from the apiKey");
+            }
+        }
+    }
+
+    /** Demande servie par le pipeline générique : une source ou plusieurs ({@link SourceGraph}). */
+    public static boolean hasSource(PdfJobRequest req) {
+        return req.getSource() != null || (req.getSources() != null && !req.getSources().isEmpty());
+    }
+
+    /**
+     * Graphe des sources, les indépendantes en parallèle. Chaque source a sa propre trace (RenderTrace n'est
+     * pas partagé entre threads) : fetch = durée murale du graphe, parse = somme des parses.
+     */
+    private JsonNode fetchAll(PdfJobRequest req, RenderTrace trace) {
+        long t0 = System.nanoTime();
+        List<RenderTrace> traces = new CopyOnWriteArrayList<>();
+        JsonNode merged = SourceGraph.fetch(req.getSources(), req.getParams(), io, (source, params) -> {
+            RenderTrace sourceTrace = new RenderTrace();
+            traces.add(sourceTrace);
+            return fetchAndParse(source, params, sourceTrace);
+        });
+        trace.stage(RenderTrace.FETCH, t0);
+        long inputBytes = 0;
+        for (RenderTrace t : traces) {
+            trace.add(RenderTrace.PARSE, t.stages().getOrDefault(RenderTrace.PARSE, 0L));
+            inputBytes += t.sizes().getOrDefault(RenderTrace.INPUT_BYTES, 0L);
+        }
+        trace.size(RenderTrace.INPUT_BYTES, inputBytes);
+        return merged;
+    }
+
+    private JsonNode fetchAndParse(SourceConfig source, Map<String, Object> params, RenderTrace trace) {
+        long t0 = System.nanoTime();
+        TransportClient client = transports.get(source.getType());
+        RawPayload payload = client.fetch(source.getConfig(), params);
+        trace.stage(RenderTrace.FETCH, t0);
+        log.debug("terminate transport");
+
+        t0 = System.nanoTime();
+        try (InputStream in = trace.countInput(payload.stream())) {
+            JsonNode root = parser.parse(new RawPayload(in, payload.contentType(), parseMeta(source, payload)));
+            trace.stage(RenderTrace.PARSE, t0);
+            log.debug("terminate parse");
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Options de lecture de la source transmises au parseur (ex. {@code sheet} d'un classeur XLSX). */
+    private static Map<String, Object> parseMeta(SourceConfig source, RawPayload payload) {
+        Object sheet = source.getConfig() != null ? source.getConfig().get("sheet") : null;
+        if (sheet == null) return payload.meta();
+        Map<String, Object> meta = new LinkedHashMap<>(payload.meta());
+        meta.put("sheet", sheet);
+        return meta;
+    }
+
+    private static RuntimeException failed(RuntimeException ex) {
+        if (ex instanceof IllegalArgumentException) return ex;
+        return new RuntimeException("PDF generation failed: " + ex.getMessage(), ex);
+    }
+
+    public PdfSaveResult executeToFile(PdfJobRequest req) {
+        // nom de fichier (force .pdf si absent)
+        String rawName = (req.getOutput() != null && req.getOutput().getFileName() != null)
+                ? req.getOutput().getFileName()
+                : ("document-" + UUID.randomUUID());
+        String fileName = rawName.toLowerCase().endsWith(".pdf") ? rawName : rawName + ".pdf";
+        return executeToFile(req, fileName);
+    }
+
+    /** Écrit le PDF dans le répertoire de sortie (fichier .part puis renommage atomique). */
+    public PdfSaveResult executeToFile(PdfJobRequest req, String fileName) {
+        return save(prepare(req), fileName);
+    }
+
+    public PdfSaveResult save(Prepared prepared, String fileName) {
+        return results.save(fileName, out -> render(prepared, out));
+    }
+
+    /** Demande dont les données sont récupérées et le HTML produit, prête pour le rendu PDF. */
+    public record Prepared(PdfJobRequest req, String html, RenderTrace trace) { }
+}
@@ -0,0 +1,455 @@
+package com.vonoy.pdf_pipeline.core;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.render.ImagePart;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.unit.DataSize;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Cache des PDF rendus, adressé par le contenu : la clé est le SHA-256 du JSON canonique
+ * (clés triées) de apiKey, langue, template, mode partiel et data. Les relances identiques des
+ * applications mobiles sur /pdf/partial ne repayent donc pas le rendu ; /pdf n'est pas mis en cache.
+ * Un rendu manquant est écrit en flux dans la réponse et recopié au passage ({@link Fill#tee}).
+ * <ul>
+ *   <li>niveau mémoire : LRU borné en octets ({@code pdf.cache.max-memory}) ;</li>
+ *   <li>niveau disque optionnel ({@code pdf.cache.disk-dir}), lui aussi LRU borné en octets ;</li>
+ *   <li>les demandes identiques simultanées attendent le même rendu (un seul rendu en vol par clé).</li>
+ * </ul>
+ * Compteurs : {@code pdf.cache.requests{result=hit|miss|coalesced}}, {@code pdf.cache.evictions{tier}}.
+ */
+@Slf4j
+@Component
+public class PdfResultCache {
+
+    private final boolean enabled;
+    private final String version;
+    private final long maxMemoryBytes;
+    private final long maxEntryBytes;
+    private final long ttlMillis;
+    private final ObjectMapper canonicalMapper;
+
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    private final DiskTier disk;
+    private final Map<String, CompletableFuture<byte[]>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter coalesced;
+    private final Counter memoryEvictions;
+    private final Counter diskEvictions;
+
+    public PdfResultCache(ObjectMapper objectMapper,
+                          MeterRegistry meters,
+                          @Value("${pdf.cache.enabled:true}") boolean enabled,
+                          @Value("${pdf.cache.version:1}") String version,
+                          @Value("${pdf.cache.max-memory:64MB}") DataSize maxMemory,
+                          @Value("${pdf.cache.max-entry-size:4MB}") DataSize maxEntrySize,
+                          @Value("${pdf.cache.ttl:10m}") Duration ttl,
+                          @Value("${pdf.cache.disk-dir:}") String diskDir,
+                          @Value("${pdf.cache.disk-max-size:1GB}") DataSize diskMaxSize,
+                          @Value("${pdf.cache.disk-max-entry-size:32MB}") DataSize diskMaxEntrySize) {
+        this.enabled = enabled;
+        this.version = version;
+        this.maxMemoryBytes = maxMemory.toBytes();
+        this.maxEntryBytes = maxEntrySize.toBytes();
+        this.ttlMillis = ttl.toMillis();
+        this.canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+        this.memoryHits = requests(meters, "hit", "memory");
+        this.diskHits = requests(meters, "hit", "disk");
+        this.misses = requests(meters, "miss", "none");
+        this.coalesced = requests(meters, "coalesced", "none");
+        this.memoryEvictions = Counter.builder("pdf.cache.evictions").tag("tier", "memory").register(meters);
+        this.diskEvictions = Counter.builder("pdf.cache.evictions").tag("tier", "disk").register(meters);
+        Gauge.builder("pdf.cache.size", this, c -> c.memoryBytes()).tag("tier", "memory").baseUnit("bytes").register(meters);
+
+        this.disk = (enabled && diskDir != null && !diskDir.isBlank())
+                ? new DiskTier(Path.of(diskDir.trim()), diskMaxSize.toBytes(), diskMaxEntrySize.toBytes())
+                : null;
+        if (disk != null) {
+            Gauge.builder("pdf.cache.size", disk, DiskTier::bytes).tag("tier", "disk").baseUnit("bytes").register(meters);
+        }
+        if (enabled) {
+            log.info("PDF cache: {} in memory, disk tier {}, ttl {}", maxMemory,
+                    disk != null ? disk.dir + " (" + diskMaxSize + ")" : "disabled", ttl);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /** Clé canonique d'une demande : deux requêtes qui produisent le même PDF ont la même clé. */
+    public String key(PdfJobRequest req, String templateId, boolean partial) {
+        return key(req, templateId, partial, List.of());
+    }
+
+    /** Idem avec les images reçues en multipart : leur contenu est lu en flux dans le digest. */
+    public String key(PdfJobRequest req, String templateId, boolean partial, List<ImagePart> images) {
+        Map<String, Object> canonical = new LinkedHashMap<>();
+        canonical.put("v", version);
+        canonical.put("apiKey", req.getApiKey());
+        canonical.put("template", templateId);
+        canonical.put("language", req.getLanguage());
+        canonical.put("partial", partial);
+        canonical.put("data", req.getData());
+        if (!images.isEmpty()) {
+            // Les tailles délimitent les parties dans le flux haché.
+            canonical.put("images", images.stream().map(ImagePart::size).toList());
+        }
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            // Sérialisé directement dans le digest : pas de copie String/byte[] des images base64.
+            try (OutputStream out = new DigestOutputStream(OutputStream.nullOutputStream(), md)) {
+                // Flux laissé ouvert par Jackson : les images sont hachées à la suite.
+                canonicalMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET).writeValue(out, canonical);
+                for (ImagePart image : images) {
+                    try (InputStream in = image.source().getInputStream()) {
+                        in.transferTo(out);
+                    }
+                }
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (NoSuchAlgorithmException | IOException e) {
+            throw new IllegalStateException("Cannot hash request", e);
+        }
+    }
+
+    /**
+     * PDF en cache pour {@code key}, sinon rendu par {@code render} et mis en cache.
+     * Si un rendu de la même clé est déjà en cours, on attend son résultat au lieu d'en lancer un second.
+     */
+    public byte[] get(String key, Callable<byte[]> render) {
+        try (Fill fill = open(key)) {
+            if (fill.cached() != null) return fill.cached();
+            byte[] bytes = render.call();
+            fill.complete(bytes);
+            return bytes;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Entrée de {@code key} : soit le PDF en cache ({@link Fill#cached()}, éventuellement après avoir attendu
+     * un rendu identique en cours), soit le droit de le rendre, à publier par {@link Fill#complete}.
+     * Si le rendu attendu échoue ou ne peut être mis en cache, l'appelant rend lui-même, sans cache.
+     */
+    public Fill open(String key) {
+        byte[] cached = lookup(key);
+        if (cached != null) return new Fill(key, cached, null);
+
+        CompletableFuture<byte[]> mine = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            coalesced.increment();
+            try {
+                byte[] bytes = running.join();
+                if (bytes != null) return new Fill(key, bytes, null);
+            } catch (CompletionException | CancellationException ignored) {
+                // rendu d'origine en échec : on rend nous-mêmes
+            }
+            return new Fill(key, null, null);
+        }
+
+        // Un rendu a pu se terminer entre le lookup et l'enregistrement.
+        byte[] bytes = lookup(key);
+        if (bytes != null) {
+            mine.complete(bytes);
+            inFlight.remove(key, mine);
+            return new Fill(key, bytes, null);
+        }
+        misses.increment();
+        return new Fill(key, null, mine);
+    }
+
+    /**
+     * Résultat de {@link #open}. Pour un rendu à faire, le PDF peut être écrit en flux dans la réponse
+     * à travers {@link #tee} puis publié par {@link #complete()} ; {@link #close()} sans {@code complete}
+     * libère les demandes identiques en attente (rendu en échec, client parti).
+     */
+    public final class Fill implements AutoCloseable {
+        private final String key;
+        private final byte[] cached;
+        private final CompletableFuture<byte[]> future;   // null : pas de publication
+        private FastByteArrayOutputStream copy;
+        private boolean done;
+
+        private Fill(String key, byte[] cached, CompletableFuture<byte[]> future) {
+            this.key = key;
+            this.cached = cached;
+            this.future = future;
+        }
+
+        /** PDF déjà en cache, ou null si l'appelant doit le rendre. */
+        public byte[] cached() {
+            return cached;
+        }
+
+        /** {@code out} doublé d'une copie pour le cache ; copie abandonnée au-delà de la taille d'entrée max. */
+        public synchronized OutputStream tee(OutputStream out) {
+            if (future == null) return out;
+            copy = new FastByteArrayOutputStream();
+            return new FilterOutputStream(out) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    capture(new byte[] {(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    capture(b, off, len);
+                }
+            };
+        }
+
+        private synchronized void capture(byte[] b, int off, int len) throws IOException {
+            if (copy == null) return;
+            if (copy.size() + len > maxCachedBytes()) {
+                copy = null;
+                return;
+            }
+            copy.write(b, off, len);
+        }
+
+        /** Publie le PDF écrit à travers {@link #tee}. */
+        public synchronized void complete() {
+            complete(copy != null ? copy.toByteArrayUnsafe() : null);
+        }
+
+        /** Publie {@code bytes} (null : rien à mettre en cache) et réveille les demandes identiques. */
+        public synchronized void complete(byte[] bytes) {
+            if (done || future == null) return;
+            done = true;
+            try {
+                if (bytes != null) put(key, bytes);
+            } finally {
+                future.complete(bytes);
+                inFlight.remove(key, future);
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            if (done || future == null) return;
+            done = true;
+            future.complete(null);
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * Au-delà, un PDF n'a sa place dans aucun niveau : inutile d'en garder la copie. Borne aussi la copie en heap
+     * de chaque rendu en vol ({@link Fill#tee}), d'où {@code disk-max-entry-size} plutôt que toute la taille du disque.
+     */
+    private long maxCachedBytes() {
+        long memoryMax = Math.min(maxEntryBytes, maxMemoryBytes);
+        return disk != null ? Math.max(memoryMax, disk.maxEntryBytes()) : memoryMax;
+    }
+
+    private byte[] lookup(String key) {
+        synchronized (memory) {
+            Entry e = memory.get(key);
+            if (e != null && !expired(e.createdAt())) {
+                memoryHits.increment();
+                return e.bytes();
+            }
+            if (e != null) removeFromMemory(key);
+        }
+        if (disk != null) {
+            Entry e = disk.get(key, ttlMillis);
+            if (e != null) {
+                diskHits.increment();
+                putInMemory(key, e);
+                return e.bytes();
+            }
+        }
+        return null;
+    }
+
+    private void put(String key, byte[] bytes) {
+        Entry e = new Entry(bytes, System.currentTimeMillis());
+        putInMemory(key, e);
+        if (disk != null) disk.put(key, e);
+    }
+
+    private void putInMemory(String key, Entry e) {
+        if (e.bytes().length > maxEntryBytes || e.bytes().length > maxMemoryBytes) return;
+        synchronized (memory) {
+            removeFromMemory(key);
+            memory.put(key, e);
+            memoryBytes += e.bytes().length;
+            Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                Map.Entry<String, Entry> eldest = it.next();
+                memoryBytes -= eldest.getValue().bytes().length;
+                it.remove();
+                memoryEvictions.increment();
+            }
+        }
+    }
+
+    private void removeFromMemory(String key) {
+        Entry old = memory.remove(key);
+        if (old != null) memoryBytes -= old.bytes().length;
+    }
+
+    private long memoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    private boolean expired(long createdAt) {
+        return ttlMillis > 0 && System.currentTimeMillis() - createdAt > ttlMillis;
+    }
+
+    private static Counter requests(MeterRegistry meters, String result, String tier) {
+        return Counter.builder("pdf.cache.requests").tag("result", result).tag("tier", tier).register(meters);
+    }
+
+    private record Entry(byte[] bytes, long createdAt) { }
+
+    /** Un fichier {@code <clé>.pdf} par entrée ; écrit en .part puis renommé. Repris au redémarrage. */
+    private final class DiskTier {
+        private final Path dir;
+        private final long maxBytes;
+        private final long maxEntryBytes;
+        private final LinkedHashMap<String, Long> sizes = new LinkedHashMap<>(64, 0.75f, true);
+        private long bytes;
+
+        DiskTier(Path dir, long maxBytes, long maxEntryBytes) {
+            this.dir = dir.toAbsolutePath().normalize();
+            this.maxBytes = maxBytes;
+            this.maxEntryBytes = maxEntryBytes;
+            try {
+                Files.createDirectories(this.dir);
+                try (Stream<Path> files = Files.list(this.dir)) {
+                    files.filter(p -> p.getFileName().toString().endsWith(".pdf"))
+                         .sorted(Comparator.comparing(DiskTier::lastModified))
+                         .forEach(p -> {
+                             long size = p.toFile().length();
+                             sizes.put(keyOf(p), size);
+                             bytes += size;
+                         });
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot use PDF cache directory " + this.dir, e);
+            }
+        }
+
+        Entry get(String key, long ttlMillis) {
+            synchronized (this) {
+                if (sizes.get(key) == null) return null; // get() : met aussi à jour l'ordre LRU
+            }
+            Path p = path(key);
+            try {
+                long createdAt = Files.getLastModifiedTime(p).toMillis();
+                if (ttlMillis > 0 && System.currentTimeMillis() - createdAt > ttlMillis) {
+                    remove(key);
+                    return null;
+                }
+                return new Entry(Files.readAllBytes(p), createdAt);
+            } catch (NoSuchFileException e) {
+                remove(key);
+                return null;
+            } catch (IOException e) {
+                log.warn("Cannot read cached PDF {}: {}", p, e.getMessage());
+                return null;
+            }
+        }
+
+        /** Plus grand PDF accepté sur disque. */
+        long maxEntryBytes() {
+            return Math.min(maxEntryBytes, maxBytes);
+        }
+
+        void put(String key, Entry e) {
+            if (e.bytes().length > maxEntryBytes()) return;
+            Path target = path(key);
+            Path part = dir.resolve(key + ".pdf.part");
+            try {
+                Files.write(part, e.bytes());
+                Files.move(part, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException ex) {
+                PdfResultStore.deleteQuietly(part);
+                log.warn("Cannot write cached PDF {}: {}", target, ex.getMessage());
+                return;
+            }
+            List<String> evicted = new ArrayList<>();
+            synchronized (this) {
+                Long old = sizes.put(key, (long) e.bytes().length);
+                bytes += e.bytes().length - (old != null ? old : 0);
+                Iterator<Map.Entry<String, Long>> it = sizes.entrySet().iterator();
+                while (bytes > maxBytes && it.hasNext()) {
+                    Map.Entry<String, Long> eldest = it.next();
+                    if (eldest.getKey().equals(key)) continue;
+                    bytes -= eldest.getValue();
+                    evicted.add(eldest.getKey());
+                    it.remove();
+                }
+            }
+            for (String k : evicted) {
+                PdfResultStore.deleteQuietly(path(k));
+                diskEvictions.increment();
+            }
+        }
+
+        private void remove(String key) {
+            synchronized (this) {
+                Long old = sizes.remove(key);
+                if (old != null) bytes -= old;
+            }
+            PdfResultStore.deleteQuietly(path(key));
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        private Path path(String key) {
+            return dir.resolve(key + ".pdf");
+        }
+
+        private static String keyOf(Path p) {
+            String name = p.getFileName().toString();
+            return name.substring(0, name.length() - ".pdf".length());
+        }
+
+        private static long lastModified(Path p) {
+            return p.toFile().lastModified();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.vonoy.pdf_pipeline.core;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfSaveResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Répertoire de sortie des PDF ({@code pdf.output.dir}).
+ * Chaque fichier est d'abord écrit en {@code .part} puis renommé atomiquement : un lecteur
+ * (téléchargement d'un job, purge) ne voit jamais un PDF à moitié écrit.
+ */
+@Slf4j
+@Component
+public class PdfResultStore {
+
+    static final String PART_SUFFIX = ".part";
+
+    private final Path root;
+
+    public PdfResultStore(@Value("${pdf.output.dir:./results}") String outputDir) {
+        this.root = Path.of(outputDir.trim()).toAbsolutePath().normalize();
+    }
+
+    /** Contenu écrit dans le fichier de sortie. */
+    @FunctionalInterface
+    public interface Content {
+        void writeTo(OutputStream out) throws Exception;
+    }
+
+    /** Écrit {@code content} sous {@code fileName} (relatif au répertoire de sortie) puis publie le fichier. */
+    public PdfSaveResult save(String fileName, Content content) {
+        Path target = resolve(fileName);
+        Path part = target.resolveSibling(target.getFileName() + PART_SUFFIX);
+        try {
+            Files.createDirectories(target.getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(part), 64 * 1024)) {
+                content.writeTo(out);
+            }
+            long size = Files.size(part);
+            move(part, target);
+            return new PdfSaveResult(root.relativize(target).toString(), target.toString(), size);
+        } catch (Exception e) {
+            deleteQuietly(part);
+            if (e instanceof RuntimeException re) throw re;
+            throw new RuntimeException("Failed to write PDF file: " + e.getMessage(), e);
+        }
+    }
+
+    /** Chemin absolu d'un fichier du répertoire de sortie ; refuse toute sortie du répertoire. */
+    public Path resolve(String fileName) {
+        Path p = root.resolve(fileName).normalize();
+        if (!p.startsWith(root) || p.equals(root)) {
+            throw new IllegalArgumentException("Invalid output file name: " + fileName);
+        }
+        return p;
+    }
+
+    public Path root() {
+        return root;
+    }
+
+    public boolean delete(String fileName) {
+        return deleteQuietly(resolve(fileName));
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Même répertoire, donc même volume en pratique ; repli pour les FS exotiques.
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    static boolean deleteQuietly(Path p) {
+        try {
+            return Files.deleteIfExists(p);
+        } catch (IOException e) {
+            log.warn("Cannot delete {}: {}", p, e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.vonoy.pdf_pipeline.core;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool dédié aux rendus openhtmltopdf/PDFBox, placé devant PdfService.
+ * <ul>
+ *   <li>au plus {@code max-concurrency} rendus simultanés ;</li>
+ *   <li>au plus {@code queue-capacity} demandes en attente, au-delà : refus immédiat (429) ;</li>
+ *   <li>une demande admise qui n'obtient pas de worker avant {@code queue-timeout} est abandonnée (503).</li>
+ * </ul>
+ * Sous surcharge le débit reste plat au lieu de laisser chaque thread Tomcat lancer un rendu
+ * (cf. les hs_err "Failed to commit metaspace").
+ */
+@Slf4j
+@Component
+public class RenderExecutor implements DisposableBean {
+
+    private final ThreadPoolExecutor pool;
+    private final Semaphore admission;
+    private final int maxConcurrency;
+    private final int capacity;
+    private final Duration queueTimeout;
+    private final long retryAfterSeconds;
+
+    public RenderExecutor(@Value("${pdf.render.max-concurrency:0}") int maxConcurrency,
+                          @Value("${pdf.render.queue-capacity:16}") int queueCapacity,
+                          @Value("${pdf.render.queue-timeout:30s}") Duration queueTimeout,
+                          @Value("${pdf.render.retry-after:5s}") Duration retryAfter) {
+        this.maxConcurrency = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+        this.queueTimeout = queueTimeout;
+        this.retryAfterSeconds = Math.max(1, retryAfter.toSeconds());
+        // Les permis bornent à la fois les rendus en cours et la file : la queue du pool n'a pas besoin de borne.
+        this.capacity = this.maxConcurrency + Math.max(0, queueCapacity);
+        this.admission = new Semaphore(capacity, true);
+        this.pool = new ThreadPoolExecutor(this.maxConcurrency, this.maxConcurrency,
+                0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), namedThreads("pdf-render-"));
+        log.info("Render pool: {} worker(s), {} queued max, queue timeout {}",
+                this.maxConcurrency, queueCapacity, queueTimeout);
+    }
+
+    /** Admet (sans attendre) puis exécute le rendu sur le pool, en bloquant l'appelant jusqu'au résultat. */
+    public <T> T execute(Callable<T> task) {
+        return tryAdmit().run(task);
+    }
+
+    /**
+     * Réserve une place sans attendre. Permet de refuser une requête (429) avant d'avoir
+     * engagé la réponse HTTP, puis d'exécuter le rendu plus tard via {@link Admission#run}.
+     */
+    public Admission tryAdmit() {
+        if (!admission.tryAcquire()) {
+            throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL, retryAfterSeconds,
+                    "Render queue is full");
+        }
+        return new Admission();
+    }
+
+    /** Réserve une place en attendant au plus {@code wait} ; vide si aucune place ne s'est libérée (traitements par lot). */
+    public Optional<Admission> tryAdmit(Duration wait) throws InterruptedException {
+        return admission.tryAcquire(wait.toMillis(), TimeUnit.MILLISECONDS)
+                ? Optional.of(new Admission())
+                : Optional.empty();
+    }
+
+    public int maxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /** Nombre maximal de demandes admises (en cours + en attente). */
+    public int capacity() {
+        return capacity;
+    }
+
+    public long retryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+
+    /** Place réservée dans le pool ; libérée après exécution (ou via {@link #close()} si jamais utilisée). */
+    public final class Admission implements AutoCloseable {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Admission() { }
+
+        public <T> T run(Callable<T> task) {
+            try (Worker worker = awaitWorker()) {
+                return worker.run(task);
+            }
+        }
+
+        /**
+         * Attend au plus {@code queue-timeout} qu'un worker du pool soit libre et le réserve (503 sinon).
+         * Le rendu lui est confié ensuite par {@link Worker#run} : une réponse en streaming peut ainsi
+         * obtenir son worker (ou son refus) avant d'engager le 200.
+         */
+        public Worker awaitWorker() {
+            CountDownLatch started = new CountDownLatch(1);
+            Worker worker = new Worker();
+            Future<?> future;
+            try {
+                future = pool.submit(() -> {
+                    started.countDown();
+                    worker.serve();
+                });
+            } catch (RejectedExecutionException e) {
+                close();
+                throw e;
+            }
+            try {
+                if (!started.await(queueTimeout.toMillis(), TimeUnit.MILLISECONDS) && future.cancel(false)) {
+                    close();
+                    throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_TIMEOUT, retryAfterSeconds,
+                            "No render worker available within " + queueTimeout);
+                }
+            } catch (InterruptedException e) {
+                if (future.cancel(false)) close();
+                else worker.close();
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Render interrupted", e);
+            }
+            return worker;
+        }
+
+        /** Worker réservé ; libéré à la fin de la tâche, via {@link #close()} ou faute de tâche reçue sous {@code queue-timeout}. */
+        public final class Worker implements AutoCloseable {
+            private final CompletableFuture<Callable<?>> handoff = new CompletableFuture<>();
+            private final CompletableFuture<Object> result = new CompletableFuture<>();
+
+            private Worker() { }
+
+            private void serve() {
+                try {
+                    Callable<?> task = handoff.get(queueTimeout.toMillis(), TimeUnit.MILLISECONDS);
+                    if (task != null) result.complete(task.call());
+                } catch (TimeoutException e) {
+                    // Réponse jamais écrite (client parti) : on rend le worker.
+                    result.cancel(false);
+                } catch (Throwable t) {
+                    result.completeExceptionally(t instanceof ExecutionException ee ? ee.getCause() : t);
+                } finally {
+                    Admission.this.close();
+                }
+            }
+
+            @SuppressWarnings("unchecked")
+            public <T> T run(Callable<T> task) {
+                if (!handoff.complete(task)) throw new IllegalStateException("Worker already used");
+                try {
+                    return (T) result.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException re) throw re;
+                    if (cause instanceof Error err) throw err;
+                    throw new RuntimeException(cause.getMessage(), cause);
+                } catch (CancellationException e) {
+                    throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_TIMEOUT, retryAfterSeconds,
+                            "Render worker released before use");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Render interrupted", e);
+                }
+            }
+
+            /** Variante non bloquante de {@link #run} : le worker est libéré à la fin de la tâche. */
+            @SuppressWarnings("unchecked")
+            public <T> CompletableFuture<T> submit(Callable<T> task) {
+                if (!handoff.complete(task)) throw new IllegalStateException("Worker already used");
+                return (CompletableFuture<T>) (CompletableFuture<?>) result;
+            }
+
+            /** Libère le worker s'il n'a reçu aucune tâche. */
+            @Override
+            public void close() {
+                handoff.complete(null);
+            }
+        }
+
+        /**
+         * Variante non bloquante de {@link #run} : la place est libérée à la fin du rendu.
+         * Pas de délai d'attente ici, l'appelant borne lui-même le nombre de tâches en vol.
+         */
+        public <T> CompletableFuture<T> submit(Callable<T> task) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                pool.execute(() -> {
+                    try {
+                        if (!result.isDone()) result.complete(task.call());
+                    } catch (Throwable t) {
+                        result.completeExceptionally(t);
+                    } finally {
+                        close();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                close();
+                throw e;
+            }
+            return result;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) admission.release();
+        }
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
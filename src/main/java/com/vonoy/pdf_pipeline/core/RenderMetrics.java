@@ -0,0 +1,56 @@
+package com.vonoy.pdf_pipeline.core;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publication d'un {@link RenderTrace} terminé :
+ * <ul>
+ *   <li>{@code pdf.render} : durée totale ;</li>
+ *   <li>{@code pdf.render.stage{stage}} : durée par étape (fetch, parse, context, images, template, layout, write) ;</li>
+ *   <li>{@code pdf.render.input}, {@code .images}, {@code .pages}, {@code .output} : tailles.</li>
+ * </ul>
+ * Tous tagués {@code document} (proof, partial, pipeline), {@code apiKey} et {@code language}.
+ * L'apiKey est bornée : une clé inconnue est refusée avant le rendu.
+ * Les rendus de chauffe ({@link RenderTrace#warmup()}) ne sont pas publiés.
+ */
+@Component
+public class RenderMetrics {
+
+    /** Taille de la trace -> (nom du DistributionSummary, unité). */
+    private static final Map<String, String[]> SUMMARIES = Map.of(
+            RenderTrace.INPUT_BYTES, new String[] { "pdf.render.input", "bytes" },
+            RenderTrace.IMAGE_COUNT, new String[] { "pdf.render.images", "images" },
+            RenderTrace.PAGES, new String[] { "pdf.render.pages", "pages" },
+            RenderTrace.OUTPUT_BYTES, new String[] { "pdf.render.output", "bytes" });
+
+    private final MeterRegistry meters;
+
+    public RenderMetrics(MeterRegistry meters) {
+        this.meters = meters;
+    }
+
+    public void record(String document, String apiKey, Object language, RenderTrace trace) {
+        if (trace.isWarmup()) return;
+        Tags tags = Tags.of("document", document,
+                "apiKey", apiKey != null ? apiKey : "none",
+                "language", language != null ? language.toString() : "none");
+
+        Timer.builder("pdf.render").tags(tags).register(meters)
+                .record(trace.elapsedNanos(), TimeUnit.NANOSECONDS);
+        trace.stages().forEach((stage, nanos) ->
+                Timer.builder("pdf.render.stage").tags(tags).tag("stage", stage).register(meters)
+                        .record(nanos, TimeUnit.NANOSECONDS));
+        trace.sizes().forEach((name, value) -> {
+            String[] summary = SUMMARIES.get(name);
+            if (summary == null) return;
+            DistributionSummary.builder(summary[0]).baseUnit(summary[1]).tags(tags).register(meters).record(value);
+        });
+    }
+}
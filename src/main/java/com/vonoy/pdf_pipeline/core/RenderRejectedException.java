@@ -0,0 +1,24 @@
+package com.vonoy.pdf_pipeline.core;
+
+import lombok.Getter;
+
+/** Levée quand le pool de rendu refuse ou abandonne une demande (surcharge). */
+@Getter
+public class RenderRejectedException extends RuntimeException {
+
+    public enum Reason {
+        /** File d'attente pleine : la demande n'a pas été admise. */
+        QUEUE_FULL,
+        /** Admise, mais aucun worker libre avant l'expiration du délai d'attente. */
+        QUEUE_TIMEOUT
+    }
+
+    private final Reason reason;
+    private final long retryAfterSeconds;
+
+    public RenderRejectedException(Reason reason, long retryAfterSeconds, String message) {
+        super(message);
+        this.reason = reason;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,138 @@
+package com.vonoy.pdf_pipeline.core;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Durées par étape et tailles d'un rendu (un document, un thread).
+ * Alimenté par PdfService / PdfPipeline, publié dans Micrometer par {@link RenderMetrics}.
+ */
+public final class RenderTrace {
+
+    // Étapes
+    public static final String QUEUE = "queue";
+    public static final String FETCH = "fetch";
+    public static final String PARSE = "parse";  // corps de la requête ou payload d'un transport
+    public static final String CONTEXT = "context";
+    public static final String IMAGES = "images";
+    public static final String TEMPLATE = "template";
+    public static final String LAYOUT = "layout";
+    public static final String WRITE = "write";
+
+    // Tailles
+    public static final String INPUT_BYTES = "inputBytes";
+    public static final String IMAGE_COUNT = "images";
+    public static final String IMAGE_BYTES = "imageBytes";
+    public static final String HTML_LENGTH = "htmlLength";
+    public static final String PAGES = "pages";
+    public static final String FONTS = "fonts";     // mode profil uniquement
+    public static final String OUTPUT_BYTES = "outputBytes";
+
+    private long startNanos = System.nanoTime();
+    private final boolean profile;
+    private final boolean warmup;
+    private final Map<String, Long> stages = new LinkedHashMap<>();
+    private final Map<String, Long> sizes = new LinkedHashMap<>();
+    private long inputBytes;
+    private long outputBytes;
+
+    public RenderTrace() {
+        this(false);
+    }
+
+    /** {@code profile} : mesures supplémentaires plus coûteuses (polices du document). */
+    public RenderTrace(boolean profile) {
+        this(profile, false);
+    }
+
+    private RenderTrace(boolean profile, boolean warmup) {
+        this.profile = profile;
+        this.warmup = warmup;
+    }
+
+    /** Rendu de chauffe : ni publié dans Micrometer, ni mis dans les caches alimentés par le trafic. */
+    public static RenderTrace warmup() {
+        return new RenderTrace(false, true);
+    }
+
+    public boolean isProfile() {
+        return profile;
+    }
+
+    public boolean isWarmup() {
+        return warmup;
+    }
+
+    /** Début du rendu proprement dit (après l'attente d'un worker) : point de départ de {@link #elapsedNanos()}. */
+    public void begin() {
+        startNanos = System.nanoTime();
+    }
+
+    /** Ajoute une durée mesurée ailleurs (ex. désérialisation de la requête). */
+    public void add(String stage, long nanos) {
+        stages.merge(stage, nanos, Long::sum);
+    }
+
+    /** Ajoute le temps écoulé depuis {@code startNanos} (System.nanoTime()) à l'étape {@code stage}. */
+    public void stage(String stage, long startNanos) {
+        stages.merge(stage, System.nanoTime() - startNanos, Long::sum);
+    }
+
+    public void size(String name, long value) {
+        sizes.put(name, value);
+    }
+
+    /** Compte les octets lus sur {@code in} (payload d'un transport). */
+    public InputStream countInput(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) inputBytes++;
+                return b;
+            }
+
+            @Override public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) inputBytes += n;
+                return n;
+            }
+        };
+    }
+
+    /** Compte les octets du PDF écrits dans {@code out}. */
+    public OutputStream countOutput(OutputStream out) {
+        return new FilterOutputStream(out) {
+            @Override public void write(int b) throws IOException {
+                out.write(b);
+                outputBytes++;
+            }
+
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                outputBytes += len;
+            }
+        };
+    }
+
+    /** Durées en nanosecondes, dans l'ordre d'exécution des étapes. */
+    public Map<String, Long> stages() {
+        return Collections.unmodifiableMap(stages);
+    }
+
+    public Map<String, Long> sizes() {
+        Map<String, Long> all = new LinkedHashMap<>(sizes);
+        if (inputBytes > 0) all.putIfAbsent(INPUT_BYTES, inputBytes);
+        if (outputBytes > 0) all.put(OUTPUT_BYTES, outputBytes);
+        return all;
+    }
+
+    public long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+}
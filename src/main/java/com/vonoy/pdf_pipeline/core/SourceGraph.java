@@ -0,0 +1,162 @@
+package com.vonoy.pdf_pipeline.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vonoy.pdf_pipeline.api.dto.SourceConfig;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sources multiples d'une demande ({@code PdfJobRequest.sources}) : graphe des {@code dependsOn},
+ * chaque source est lancée sur {@link IoExecutor} dès que ses amonts sont arrivés, les sources
+ * indépendantes partent donc en parallèle.
+ * <p>
+ * Une source dépendante reçoit les données de ses amonts dans ses params (sous leur id) et ses chaînes
+ * de config peuvent les citer : {@code ${customer.id}}, {@code ${invoice.lines.0.sku}}.
+ * Résultat : un objet {@code {id: données}} avec toutes les sources.
+ */
+final class SourceGraph {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\$\\{([A-Za-z0-9_-]+)((?:\\.[^.}]+)*)}");
+
+    /** Fetch + parse d'une source, appelé sur un thread I/O. */
+    interface Fetcher {
+        JsonNode fetch(SourceConfig source, Map<String, Object> params);
+    }
+
+    private SourceGraph() {
+    }
+
+    static ObjectNode fetch(List<SourceConfig> sources, Map<String, Object> params, IoExecutor io, Fetcher fetcher) {
+        Map<String, SourceConfig> byId = index(sources);
+        Map<String, CompletableFuture<JsonNode>> results = new LinkedHashMap<>();
+        for (String id : order(byId)) {
+            SourceConfig source = byId.get(id);
+            List<String> deps = dependencies(source);
+            // Futures capturés ici : le callback ne relit pas results, encore rempli par ce thread.
+            List<CompletableFuture<JsonNode>> upstream = deps.stream().map(results::get).toList();
+            results.put(id, CompletableFuture.allOf(upstream.toArray(CompletableFuture[]::new)).thenCompose(v -> {
+                Map<String, JsonNode> inputs = new LinkedHashMap<>();
+                for (int i = 0; i < deps.size(); i++) inputs.put(deps.get(i), upstream.get(i).join());
+                return io.submit(() -> fetcher.fetch(bind(source, inputs), with(params, inputs)));
+            }));
+        }
+
+        ObjectNode merged = JsonNodeFactory.instance.objectNode();
+        try {
+            for (String id : byId.keySet()) merged.set(id, results.get(id).join());
+        } catch (CompletionException e) {
+            results.values().forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new RuntimeException(cause.getMessage(), cause);
+        }
+        return merged;
+    }
+
+    private static Map<String, SourceConfig> index(List<SourceConfig> sources) {
+        Map<String, SourceConfig> byId = new LinkedHashMap<>();
+        for (SourceConfig s : sources) {
+            if (s == null || s.getId() == null || s.getId().isBlank()) {
+                throw new IllegalArgumentException("Each source needs an id");
+            }
+            if (byId.put(s.getId(), s) != null) {
+                throw new IllegalArgumentException("Duplicate source id: " + s.getId());
+            }
+        }
+        for (SourceConfig s : byId.values()) {
+            for (String dep : dependencies(s)) {
+                if (!byId.containsKey(dep)) {
+                    throw new IllegalArgumentException("Source '" + s.getId() + "' depends on unknown source '" + dep + "'");
+                }
+            }
+        }
+        return byId;
+    }
+
+    /** Ordre topologique (Kahn) ; une dépendance circulaire est une erreur de la demande. */
+    private static List<String> order(Map<String, SourceConfig> byId) {
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        byId.forEach((id, s) -> pending.put(id, dependencies(s).size()));
+        Deque<String> ready = new ArrayDeque<>();
+        pending.forEach((id, n) -> { if (n == 0) ready.add(id); });
+
+        List<String> order = new ArrayList<>(byId.size());
+        while (!ready.isEmpty()) {
+            String id = ready.poll();
+            order.add(id);
+            byId.forEach((other, s) -> {
+                if (dependencies(s).contains(id) && pending.merge(other, -1, Integer::sum) == 0) ready.add(other);
+            });
+        }
+        if (order.size() < byId.size()) {
+            List<String> cycle = new ArrayList<>(byId.keySet());
+            cycle.removeAll(order);
+            throw new IllegalArgumentException("Circular dependsOn between sources: " + cycle);
+        }
+        return order;
+    }
+
+    private static List<String> dependencies(SourceConfig s) {
+        return s.getDependsOn() == null ? List.of() : s.getDependsOn();
+    }
+
+    private static Map<String, Object> with(Map<String, Object> params, Map<String, JsonNode> inputs) {
+        if (inputs.isEmpty()) return params;
+        Map<String, Object> merged = new LinkedHashMap<>(params == null ? Map.of() : params);
+        merged.putAll(inputs);
+        return merged;
+    }
+
+    /** Copie de la source avec les {@code ${id.chemin}} de sa config remplacés par les valeurs amont. */
+    private static SourceConfig bind(SourceConfig source, Map<String, JsonNode> inputs) {
+        if (inputs.isEmpty()) return source;
+        @SuppressWarnings("unchecked")
+        Map<String, Object> config = (Map<String, Object>) resolve(source.getConfig(), source.getId(), inputs);
+        return new SourceConfig(source.getId(), source.getType(), config, source.getDependsOn());
+    }
+
+    private static Object resolve(Object value, String sourceId, Map<String, JsonNode> inputs) {
+        if (value instanceof String s) return substitute(s, sourceId, inputs);
+        if (value instanceof Map<?, ?> m) {
+            Map<Object, Object> copy = new LinkedHashMap<>();
+            m.forEach((k, v) -> copy.put(k, resolve(v, sourceId, inputs)));
+            return copy;
+        }
+        if (value instanceof List<?> l) {
+            return l.stream().map(v -> resolve(v, sourceId, inputs)).toList();
+        }
+        return value;
+    }
+
+    private static String substitute(String s, String sourceId, Map<String, JsonNode> inputs) {
+        if (!s.contains("${")) return s;
+        Matcher m = PLACEHOLDER.matcher(s);
+        StringBuilder out = new StringBuilder();
+        while (m.find()) {
+            JsonNode node = inputs.get(m.group(1));
+            if (node == null) {
+                // Pas un amont déclaré : laissé tel quel (ex. gabarit d'enveloppe SOAP).
+                m.appendReplacement(out, Matcher.quoteReplacement(m.group()));
+                continue;
+            }
+            for (String segment : m.group(2).isEmpty() ? new String[0] : m.group(2).substring(1).split("\\.")) {
+                node = node.isArray() && segment.chars().allMatch(Character::isDigit)
+                        ? node.path(Integer.parseInt(segment))
+                        : node.path(segment);
+            }
+            if (node.isMissingNode() || node.isNull()) {
+                throw new IllegalArgumentException("Source '" + sourceId + "': " + m.group() + " not found in upstream data");
+            }
+            m.appendReplacement(out, Matcher.quoteReplacement(node.isValueNode() ? node.asText() : node.toString()));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+}
@@ -1,43 +1,85 @@
 package com.vonoy.pdf_pipeline.normalize;
 import com.fasterxml.jackson.databind.JsonNode;
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
 import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.InvalidPathException;
 import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
+import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
 import java.util.*;
 
+/**
+ * Normalisation par règles JsonPath (pdf.normalization.rules, cf. {@link NormalizationProperties}).
+ * Les expressions sont compilées une fois au démarrage et évaluées directement sur l'arbre Jackson :
+ * ni re-sérialisation du JsonNode ni re-parsing des expressions à chaque requête.
+ */
 @Component
 public class DeclarativeNormalizer implements Normalizer {
 
-    // Chargé depuis application.yml : pdf.normalization.rules
-    private final Map<String, Map<String, List<String>>> rulesByApiKey;
+    private final ObjectMapper mapper;
+    private final Configuration jsonPath;
+    // apiKey -> champ -> expressions compilées, dans l'ordre du yml
+    private final Map<String, Map<String, List<JsonPath>>> rulesByApiKey;
 
-    public DeclarativeNormalizer(@Value("#{${pdf.normalization.rules:{}}}") Map<String, Map<String, List<String>>> rulesByApiKey) {
-        this.rulesByApiKey = rulesByApiKey != null ? rulesByApiKey : Map.of();
+    public DeclarativeNormalizer(NormalizationProperties properties, ObjectMapper mapper) {
+        this.mapper = mapper;
+        this.jsonPath = Configuration.builder()
+                .jsonProvider(new JacksonJsonNodeJsonProvider(mapper))
+                .mappingProvider(new JacksonMappingProvider(mapper))
+                .build();
+        this.rulesByApiKey = compile(properties.getRules() != null ? properties.getRules() : Map.of());
     }
 
     @Override public boolean supports(String apiKey){ return rulesByApiKey.containsKey(apiKey); }
 
     @Override public NormalizedData normalize(JsonNode root, Map<String,Object> params){
         Map<String,Object> out = new LinkedHashMap<>();
-        Map<String, List<String>> rules = rulesByApiKey.getOrDefault(params.getOrDefault("apiKey", "").toString(), null);
+        Map<String, List<JsonPath>> rules = rulesByApiKey.getOrDefault(params.getOrDefault("apiKey", "").toString(), null);
         if (rules == null) rules = rulesByApiKey.getOrDefault(params.getOrDefault("api", "").toString(), Map.of());
         if (rules.isEmpty()) rules = rulesByApiKey.values().stream().findFirst().orElse(Map.of()); // fallback
 
-        Object jsonDoc = Configuration.defaultConfiguration().jsonProvider().parse(root.toString());
-
         for (var e : rules.entrySet()){
             String field = e.getKey();
             Object value = null;
-            for (String expr : e.getValue()){
+            for (JsonPath path : e.getValue()){
                 try {
-                    value = JsonPath.read(jsonDoc, expr);
+                    value = path.read(root, jsonPath);
                 } catch (Exception ignored) {}
+                // Un null JSON explicite arrive en NullNode : pas de valeur, on essaie l'expression suivante.
+                if (value instanceof JsonNode node && (node.isNull() || node.isMissingNode())) value = null;
                 if (value != null) break;
             }
-            out.put(field, value);
+            out.put(field, plain(value));
         }
         if (params != null) out.putAll(params);
         return new NormalizedData(out);
     }
-}
\ No newline at end of file
+
+    /** Les scalaires sont déjà déballés par le provider ; objets et tableaux -> Map / List pour les templates. */
+    private Object plain(Object value) {
+        return value instanceof JsonNode node ? mapper.convertValue(node, Object.class) : value;
+    }
+
+    /** Une expression invalide fait échouer le démarrage plutôt que chaque requête. */
+    private static Map<String, Map<String, List<JsonPath>>> compile(Map<String, Map<String, List<String>>> rules) {
+        Map<String, Map<String, List<JsonPath>>> compiled = new LinkedHashMap<>();
+        rules.forEach((apiKey, fields) -> {
+            Map<String, List<JsonPath>> byField = new LinkedHashMap<>();
+            fields.forEach((field, exprs) -> {
+                List<JsonPath> paths = new ArrayList<>(exprs.size());
+                for (String expr : exprs) {
+                    try {
+                        paths.add(JsonPath.compile(expr));
+                    } catch (InvalidPathException e) {
+                        throw new IllegalArgumentException(
+                                "Invalid JsonPath for " + apiKey + "." + field + ": " + expr + " (" + e.getMessage() + ")", e);
+                    }
+                }
+                byField.put(field, List.copyOf(paths));
+            });
+            compiled.put(apiKey, Collections.unmodifiableMap(byField));
+        });
+        return Collections.unmodifiableMap(compiled);
+    }
+}
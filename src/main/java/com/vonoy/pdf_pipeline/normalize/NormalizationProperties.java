@@ -0,0 +1,29 @@
+package com.vonoy.pdf_pipeline.normalize;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Règles de {@link DeclarativeNormalizer} (application.yml : pdf.normalization.rules) :
+ * apiKey -> champ -> expressions JsonPath essayées dans l'ordre.
+ * Les apiKeys contiennent ":" : à écrire entre crochets pour que Spring garde la clé telle quelle.
+ *
+ * <pre>
+ * pdf:
+ *   normalization:
+ *     rules:
+ *       "[invoice:v1]":
+ *         customer_name: ["$.customer.name", "$.client.nom"]
+ * </pre>
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "pdf.normalization")
+public class NormalizationProperties {
+
+    private Map<String, Map<String, List<String>>> rules = new LinkedHashMap<>();
+}
@@ -1,8 +1,24 @@
 package com.vonoy.pdf_pipeline.parse;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.vonoy.pdf_pipeline.transport.RawPayload;
 
+import java.util.List;
+import java.util.function.Consumer;
+
 public interface AnyDataParser {
     JsonNode parse(RawPayload payload);
+
+    /**
+     * Lignes d'un payload tabulaire (CSV, XLSX, tableau JSON) passées une à une à {@code rows}, dans l'ordre.
+     * Par défaut le payload est parsé en entier ; une implémentation peut lire en flux.
+     */
+    default void forEachRow(RawPayload payload, Consumer<ObjectNode> rows) {
+        JsonNode root = parse(payload);
+        Iterable<JsonNode> items = root.isArray() ? root : List.of(root);
+        for (JsonNode item : items) {
+            if (item instanceof ObjectNode row) rows.accept(row);
+        }
+    }
 }
\ No newline at end of file
@@ -1,69 +1,115 @@
 package com.vonoy.pdf_pipeline.parse;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
 import com.fasterxml.jackson.dataformat.csv.CsvSchema;
 import com.fasterxml.jackson.dataformat.xml.XmlMapper;
+import com.vonoy.pdf_pipeline.parse.FormatSniffer.Format;
+import com.vonoy.pdf_pipeline.parse.FormatSniffer.Sniffed;
 import com.vonoy.pdf_pipeline.transport.RawPayload;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import org.apache.poi.ss.usermodel.*;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Component;
-import java.io.ByteArrayInputStream;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
 
+/**
+ * Payload d'un transport -> JsonNode, lu en flux depuis {@link RawPayload#stream()} (pas de copie complète
+ * en byte[]). Format d'après le Content-Type, sinon deviné sur les premiers octets ({@link FormatSniffer}).
+ */
 @Component
 public class DefaultAnyDataParser implements AnyDataParser {
     private final ObjectMapper json = new ObjectMapper();
     private final XmlMapper xml = new XmlMapper();
+    private final CsvMapper csv = new CsvMapper();
 
     @Override public JsonNode parse(RawPayload payload){
-        try {
-            byte[] bytes = payload.stream().readAllBytes();
+        try (InputStream in = new BufferedInputStream(payload.stream(), 16 * 1024)) {
             String ct = payload.contentType() != null ? payload.contentType() : "";
+            Sniffed sniffed = FormatSniffer.sniff(in);
 
-            if (ct.contains("json")) return json.readTree(bytes);
-            if (ct.contains("xml"))  return xml.readTree(bytes);
-            if (ct.contains("csv"))  return csvToArray(bytes);
-            if (ct.contains("spreadsheetml") || ct.contains("excel")) return xlsxToArray(bytes);
+            if (ct.contains("json")) return json.readTree(in);
+            // Avant "xml" : le type XLSX officiel (application/vnd.openxmlformats-...spreadsheetml.sheet) contient "xml".
+            if (ct.contains("spreadsheetml") || ct.contains("excel")) return xlsxToArray(in, payload);
+            if (ct.contains("xml"))  return xml.readTree(in);
+            // Séparateur deviné même quand le type est annoncé (exports ERP en ";").
+            if (ct.contains("csv"))  return csvToArray(in, sniffed.format() == Format.CSV ? sniffed.separator() : ',');
 
-            // Fallback: essayer JSON puis XML
-            try { return json.readTree(bytes); } catch (Exception ignore){}
-            try { return xml.readTree(bytes); } catch (Exception ignore){}
-            // Dernier recours : envelopper en objet
-            ObjectNode o = json.createObjectNode();
-            o.put("raw", new String(bytes));
-            return o;
+            // Type absent ou générique (text/plain, octet-stream...) : format deviné
+            return switch (sniffed.format()) {
+                case JSON -> json.readTree(in);
+                case XML -> xml.readTree(in);
+                case XLSX -> xlsxToArray(in, payload);
+                case CSV -> csvToArray(in, sniffed.separator());
+                // Dernier recours : envelopper en objet
+                case TEXT -> {
+                    ObjectNode o = json.createObjectNode();
+                    o.put("raw", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+                    yield o;
+                }
+            };
+        } catch (IOException e){ throw new RuntimeException(e); }
+    }
+
+    /** CSV, XLSX et tableaux JSON lus en flux : une ligne à la fois, jamais le document entier. */
+    @Override public void forEachRow(RawPayload payload, Consumer<ObjectNode> rows){
+        try (InputStream in = new BufferedInputStream(payload.stream(), 16 * 1024)) {
+            String ct = payload.contentType() != null ? payload.contentType() : "";
+            Sniffed sniffed = FormatSniffer.sniff(in);
+            Format format = ct.contains("json") ? Format.JSON
+                    : ct.contains("spreadsheetml") || ct.contains("excel") ? Format.XLSX
+                    : ct.contains("xml") ? Format.XML
+                    : ct.contains("csv") ? Format.CSV
+                    : sniffed.format();
+            switch (format) {
+                case CSV -> csvRows(in, sniffed.format() == Format.CSV ? sniffed.separator() : ',', rows);
+                case XLSX -> XlsxRows.forEach(in, sheetOf(payload), rows);
+                case JSON -> jsonRows(in, rows);
+                default -> AnyDataParser.super.forEachRow(new RawPayload(in, payload.contentType(), payload.meta()), rows);
+            }
         } catch (IOException e){ throw new RuntimeException(e); }
     }
 
-    private ArrayNode csvToArray(byte[] bytes) throws IOException {
-        CsvMapper mapper = new CsvMapper();
-        CsvSchema schema = CsvSchema.emptySchema().withHeader();
-        var it = mapper.readerFor(Object.class).with(schema).readValues(bytes);
+    private ArrayNode csvToArray(InputStream in, char separator) throws IOException {
         ArrayNode arr = json.createArrayNode();
-        while (it.hasNext()) arr.addPOJO(it.next());
+        csvRows(in, separator, arr::add);
         return arr;
     }
 
-    private ArrayNode xlsxToArray(byte[] bytes) throws IOException {
-        try (var wb = new XSSFWorkbook(new ByteArrayInputStream(bytes))) {
-            Sheet sheet = wb.getSheetAt(0);
-            ArrayNode arr = json.createArrayNode();
-            Row header = sheet.getRow(0);
-            if (header == null) return arr;
-            for (int i=1; i<=sheet.getLastRowNum(); i++){
-                Row r = sheet.getRow(i); if (r==null) continue;
-                ObjectNode obj = json.createObjectNode();
-                for (int c=0; c<header.getLastCellNum(); c++){
-                    String key = header.getCell(c).getStringCellValue();
-                    Cell cell = r.getCell(c);
-                    obj.put(key, cell==null? "" : cell.toString());
-                }
-                arr.add(obj);
+    private void csvRows(InputStream in, char separator, Consumer<ObjectNode> rows) throws IOException {
+        CsvSchema schema = CsvSchema.emptySchema().withHeader().withColumnSeparator(separator);
+        try (var it = csv.readerFor(ObjectNode.class).with(schema).<ObjectNode>readValues(in)) {
+            while (it.hasNext()) rows.accept(it.next());
+        }
+    }
+
+    /** Tableau JSON (ou objet seul) : les éléments sont lus un par un avec le parseur en flux de Jackson. */
+    private void jsonRows(InputStream in, Consumer<ObjectNode> rows) throws IOException {
+        try (JsonParser p = json.createParser(in)) {
+            JsonToken first = p.nextToken();
+            if (first == JsonToken.START_OBJECT) {
+                rows.accept(json.readTree(p));
+                return;
+            }
+            if (first != JsonToken.START_ARRAY) return;
+            while (p.nextToken() == JsonToken.START_OBJECT) {
+                rows.accept(json.readTree(p));
             }
-            return arr;
         }
     }
-}
\ No newline at end of file
+
+    private ArrayNode xlsxToArray(InputStream in, RawPayload payload) throws IOException {
+        return XlsxRows.read(in, sheetOf(payload));
+    }
+
+    /** Feuille choisie par {@code meta.sheet} (nom), sinon la première. */
+    private static String sheetOf(RawPayload payload) {
+        Object sheet = payload.meta() != null ? payload.meta().get("sheet") : null;
+        return sheet != null ? sheet.toString() : null;
+    }
+}
@@ -0,0 +1,105 @@
+package com.vonoy.pdf_pipeline.parse;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Format d'un payload deviné sur ses premiers octets, sans rien consommer ni lever d'exception :
+ * BOM, ZIP (XLSX), {@code {}/{@code [} (JSON), {@code <} (XML), sinon séparateur CSV régulier
+ * sur les premières lignes, à défaut texte brut.
+ */
+final class FormatSniffer {
+
+    enum Format { JSON, XML, CSV, XLSX, TEXT }
+
+    /** Format détecté ; {@code separator} n'a de sens que pour CSV. */
+    record Sniffed(Format format, char separator) { }
+
+    static final int PEEK = 4096;
+    private static final char[] SEPARATORS = { ',', ';', '\t', '|' };
+
+    private FormatSniffer() {
+    }
+
+    /** {@code in} doit supporter mark/reset ({@link BufferedInputStream}) ; il est rembobiné. */
+    static Sniffed sniff(InputStream in) throws IOException {
+        in.mark(PEEK);
+        byte[] head = in.readNBytes(PEEK);
+        in.reset();
+        return sniff(head, head.length);
+    }
+
+    static Sniffed sniff(byte[] head, int length) {
+        if (length >= 4 && head[0] == 'P' && head[1] == 'K' && head[2] == 3 && head[3] == 4) {
+            return new Sniffed(Format.XLSX, ',');
+        }
+        String text = decode(head, length);
+        int i = 0;
+        while (i < text.length() && Character.isWhitespace(text.charAt(i))) i++;
+        if (i < text.length()) {
+            char c = text.charAt(i);
+            if (c == '{' || c == '[') return new Sniffed(Format.JSON, ',');
+            if (c == '<') return new Sniffed(Format.XML, ',');
+        }
+        char separator = separator(text.substring(i), length == PEEK);
+        return separator != 0 ? new Sniffed(Format.CSV, separator) : new Sniffed(Format.TEXT, ',');
+    }
+
+    /**
+     * Séparateur présent sur la première ligne et en même nombre sur au moins une ligne suivante et toutes
+     * celles de l'échantillon (le plus fréquent l'emporte) ; 0 si aucun. Les passages entre guillemets sont ignorés.
+     */
+    static char separator(String text, boolean truncated) {
+        String[] lines = text.split("\r?\n", -1);
+        // La dernière ligne d'un échantillon tronqué peut être coupée : ignorée.
+        int complete = Math.min(truncated ? lines.length - 1 : lines.length, 10);
+        char best = 0;
+        int bestCount = 0;
+        for (char sep : SEPARATORS) {
+            int expected = count(lines[0], sep);
+            if (expected == 0) continue;
+            int matching = 0;
+            boolean regular = true;
+            for (int l = 1; l < complete && regular; l++) {
+                if (lines[l].isEmpty()) continue;
+                regular = count(lines[l], sep) == expected;
+                matching++;
+            }
+            if (regular && matching > 0 && expected > bestCount) {
+                best = sep;
+                bestCount = expected;
+            }
+        }
+        return best;
+    }
+
+    private static int count(String line, char sep) {
+        int n = 0;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == sep && !quoted) n++;
+        }
+        return n;
+    }
+
+    /** Échantillon décodé selon le BOM éventuel (UTF-8 par défaut), BOM retiré. */
+    private static String decode(byte[] b, int length) {
+        Charset cs = StandardCharsets.UTF_8;
+        int skip = 0;
+        if (length >= 3 && (b[0] & 0xff) == 0xEF && (b[1] & 0xff) == 0xBB && (b[2] & 0xff) == 0xBF) {
+            skip = 3;
+        } else if (length >= 2 && (b[0] & 0xff) == 0xFE && (b[1] & 0xff) == 0xFF) {
+            cs = StandardCharsets.UTF_16BE;
+            skip = 2;
+        } else if (length >= 2 && (b[0] & 0xff) == 0xFF && (b[1] & 0xff) == 0xFE) {
+            cs = StandardCharsets.UTF_16LE;
+            skip = 2;
+        }
+        return new String(b, skip, length - skip, cs);
+    }
+}
@@ -0,0 +1,220 @@
+package com.vonoy.pdf_pipeline.parse;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Lecture XLSX événementielle (XSSFReader + SAX) : la feuille n'est jamais chargée en modèle objet,
+ * seule la table des chaînes partagées reste en mémoire. Première ligne = en-têtes, une ObjectNode par ligne.
+ * Cellules typées : nombres (entier ou décimal), booléens, dates au format ISO (style de date Excel, calendrier
+ * 1900 ou 1904 selon {@code workbookPr date1904}), texte.
+ * Le classeur est d'abord copié dans un fichier temporaire : POI lit le zip depuis le disque.
+ */
+final class XlsxRows {
+
+    private XlsxRows() {
+    }
+
+    /** Lignes de la feuille {@code sheetName} (première feuille si null). */
+    static ArrayNode read(InputStream in, String sheetName) throws IOException {
+        ArrayNode rows = JsonNodeFactory.instance.arrayNode();
+        forEach(in, sheetName, rows::add);
+        return rows;
+    }
+
+    /** Idem, chaque ligne passée à {@code rows} dès qu'elle est lue (rien n'est accumulé). */
+    static void forEach(InputStream in, String sheetName, Consumer<ObjectNode> rows) throws IOException {
+        Path tmp = Files.createTempFile("pdf-xlsx-", ".xlsx");
+        try {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            try (OPCPackage pkg = OPCPackage.open(tmp.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+                StylesTable styles = reader.getStylesTable();
+                boolean date1904 = date1904(reader);
+                XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+                List<String> names = new ArrayList<>();
+                while (sheets.hasNext()) {
+                    try (InputStream sheet = sheets.next()) {
+                        names.add(sheets.getSheetName());
+                        if (sheetName == null || sheetName.equals(sheets.getSheetName())) {
+                            parse(sheet, strings, styles, date1904, rows);
+                            return;
+                        }
+                    }
+                }
+                if (sheetName == null) return;
+                throw new IllegalArgumentException("Unknown sheet '" + sheetName + "', available: " + names);
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Invalid XLSX: " + e.getMessage(), e);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void parse(InputStream sheet, ReadOnlySharedStringsTable strings, StylesTable styles,
+                              boolean date1904, Consumer<ObjectNode> rows)
+            throws IOException, SAXException, ParserConfigurationException {
+        XMLReader xml = XMLHelper.newXMLReader();
+        xml.setContentHandler(new SheetHandler(strings, styles, date1904, rows));
+        xml.parse(new InputSource(sheet));
+    }
+
+    /** {@code <workbookPr date1904="1"/>} de workbook.xml : dates comptées depuis le 1er janvier 1904 (Excel Mac). */
+    private static boolean date1904(XSSFReader reader)
+            throws IOException, OpenXML4JException, SAXException, ParserConfigurationException {
+        boolean[] date1904 = {false};
+        XMLReader xml = XMLHelper.newXMLReader();
+        xml.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes atts) {
+                if ("workbookPr".equals(localName)) {
+                    String v = atts.getValue("date1904");
+                    date1904[0] = "1".equals(v) || "true".equalsIgnoreCase(v);
+                }
+            }
+        });
+        try (InputStream workbook = reader.getWorkbookData()) {
+            xml.parse(new InputSource(workbook));
+        }
+        return date1904[0];
+    }
+
+    /** Handler SAX d'une feuille : {@code <row><c r t s><v>|<is><t>}. */
+    private static final class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final Map<Integer, Boolean> dateStyles = new HashMap<>();
+        private final Consumer<ObjectNode> rows;
+
+        private Map<Integer, String> header;
+        private Map<Integer, Object> current;
+        private final StringBuilder text = new StringBuilder();
+        private boolean inValue;
+        private int column;
+        private String type;
+        private int style;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, boolean date1904, Consumer<ObjectNode> rows) {
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.rows = rows;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            switch (localName) {
+                case "row" -> {
+                    current = new HashMap<>();
+                    column = -1;
+                }
+                case "c" -> {
+                    String ref = atts.getValue("r");
+                    column = ref != null ? new CellReference(ref).getCol() : column + 1;
+                    type = atts.getValue("t");
+                    String s = atts.getValue("s");
+                    style = s != null ? Integer.parseInt(s) : -1;
+                    text.setLength(0);
+                }
+                case "v", "t" -> inValue = true;
+                default -> { }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue) text.append(ch, start, length);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v", "t" -> inValue = false;
+                case "c" -> {
+                    Object value = value(text.toString());
+                    if (value != null && current != null) current.put(column, value);
+                }
+                case "row" -> endRow();
+                default -> { }
+            }
+        }
+
+        private void endRow() {
+            if (current == null || current.isEmpty()) return;
+            if (header == null) {
+                header = new HashMap<>();
+                current.forEach((col, v) -> header.put(col, String.valueOf(v)));
+                return;
+            }
+            ObjectNode obj = JsonNodeFactory.instance.objectNode();
+            header.entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(h -> {
+                Object v = current.get(h.getKey());
+                String key = h.getValue();
+                if (v == null) obj.put(key, "");
+                else if (v instanceof Long l) obj.put(key, l);
+                else if (v instanceof Double d) obj.put(key, d);
+                else if (v instanceof Boolean b) obj.put(key, b);
+                else obj.put(key, v.toString());
+            });
+            rows.accept(obj);
+        }
+
+        private Object value(String raw) {
+            if (type == null || "n".equals(type)) {
+                if (raw.isEmpty()) return null;
+                double d = Double.parseDouble(raw);
+                if (isDate(style) && DateUtil.isValidExcelDate(d)) {
+                    LocalDateTime dt = DateUtil.getLocalDateTime(d, date1904);
+                    return dt.toLocalTime().toSecondOfDay() == 0 ? dt.toLocalDate().toString() : dt.toString();
+                }
+                return d == Math.rint(d) && Math.abs(d) < 1e15 ? (Object) (long) d : (Object) d;
+            }
+            return switch (type) {
+                case "s" -> strings.getItemAt(Integer.parseInt(raw)).getString();
+                case "b" -> "1".equals(raw);
+                case "e" -> null;
+                default -> raw; // inlineStr, str (résultat de formule texte)
+            };
+        }
+
+        private boolean isDate(int styleIndex) {
+            if (styleIndex < 0 || styles == null) return false;
+            return dateStyles.computeIfAbsent(styleIndex, i -> {
+                XSSFCellStyle cs = styles.getStyleAt(i);
+                return cs != null && DateUtil.isADateFormat(cs.getDataFormat(), cs.getDataFormatString());
+            });
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.openhtmltopdf.outputdevice.helper.BaseRendererBuilder;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Polices embarquées dans les PDF (application.yml : pdf.fonts).
+ *
+ * <pre>
+ * pdf:
+ *   fonts:
+ *     memory-mapped: false
+ *     faces:
+ *       - family: "Noto Naskh Arabic"
+ *         location: classpath:/fonts/NotoNaskhArabic-VariableFont_wght.ttf
+ *         weights: [400, 700]
+ * </pre>
+ */
+@Getter @Setter
+@ConfigurationProperties(prefix = "pdf.fonts")
+public class FontProperties {
+
+    /** Mappe les fichiers (file: ou classpath éclaté) au lieu de les copier sur le heap. */
+    private boolean memoryMapped = false;
+
+    private List<Face> faces = new ArrayList<>();
+
+    @Getter @Setter
+    public static class Face {
+        private String family;
+        private String location;
+        /** Une police variable peut être déclarée sous plusieurs graisses. */
+        private List<Integer> weights = new ArrayList<>(List.of(400));
+        private BaseRendererBuilder.FontStyle style = BaseRendererBuilder.FontStyle.NORMAL;
+        private boolean subset = true;
+    }
+}
@@ -0,0 +1,190 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.openhtmltopdf.extend.FSCacheEx;
+import com.openhtmltopdf.extend.FSCacheValue;
+import com.openhtmltopdf.pdfboxout.PDFontSupplier;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre de polices chargé une seule fois au démarrage et partagé par tous les rendus.
+ * Les octets restent en mémoire (ou mappés) : plus de fichier temporaire par requête,
+ * et les métriques de police calculées par openhtmltopdf sont mises en cache entre documents.
+ */
+@Slf4j
+@Component
+public class FontRegistry {
+
+    static final String DEFAULT_FAMILY = "Noto Naskh Arabic";
+    static final String DEFAULT_LOCATION = "classpath:/fonts/NotoNaskhArabic-VariableFont_wght.ttf";
+
+    private final List<LoadedFace> faces;
+    private final FSCacheEx<String, FSCacheValue> fontMetrics = new SharedCache();
+
+    public FontRegistry(FontProperties props, ResourceLoader resourceLoader) {
+        List<FontProperties.Face> configured = props.getFaces();
+        if (configured == null || configured.isEmpty()) {
+            FontProperties.Face face = new FontProperties.Face();
+            face.setFamily(DEFAULT_FAMILY);
+            face.setLocation(DEFAULT_LOCATION);
+            configured = List.of(face);
+        }
+
+        List<LoadedFace> loaded = new ArrayList<>();
+        long totalBytes = 0;
+        long totalNanos = 0;
+        for (FontProperties.Face face : configured) {
+            long start = System.nanoTime();
+            ByteBuffer data = load(resourceLoader.getResource(face.getLocation()), props.isMemoryMapped());
+            if (data == null) {
+                log.warn("Font not found: {} ({})", face.getFamily(), face.getLocation());
+                continue;
+            }
+            long nanos = System.nanoTime() - start;
+            totalBytes += data.remaining();
+            totalNanos += nanos;
+            loaded.add(new LoadedFace(face, data));
+        }
+        this.faces = List.copyOf(loaded);
+
+        // Ce que l'ancien chemin payait à chaque rendu : lecture classpath + copie vers un fichier temporaire.
+        log.info("Font registry ready: {} face(s), {} KB loaded in {} ms; saves ~{} KB of temp-file I/O per render",
+                faces.size(), totalBytes / 1024, totalNanos / 1_000_000, 2 * totalBytes / 1024);
+    }
+
+    /** Déclare toutes les polices du registre sur le builder, sans aucune I/O disque. */
+    public PdfRendererBuilder applyTo(PdfRendererBuilder builder) {
+        for (LoadedFace f : faces) {
+            for (Integer weight : f.face().getWeights()) {
+                builder.useFont(f::openStream, f.face().getFamily(), weight, f.face().getStyle(), f.face().isSubset());
+            }
+        }
+        builder.useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, fontMetrics);
+        return builder;
+    }
+
+    /**
+     * Charge chaque police une seule fois dans {@code doc}. Tous les rendus ajoutés à ce même document
+     * (fusion de lots) réutilisent ces PDFont : la police n'est embarquée qu'une fois dans le fichier.
+     */
+    public DocumentFonts embedInto(PDDocument doc) throws IOException {
+        List<PDFont> fonts = new ArrayList<>(faces.size());
+        for (LoadedFace f : faces) {
+            try (InputStream is = f.openStream()) {
+                fonts.add(PDType0Font.load(doc, is, f.face().isSubset()));
+            }
+        }
+        return new DocumentFonts(fonts);
+    }
+
+    /** Variante de {@link #applyTo(PdfRendererBuilder)} pour un document partagé (cf. {@link #embedInto}). */
+    public PdfRendererBuilder applyTo(PdfRendererBuilder builder, DocumentFonts documentFonts) {
+        for (int i = 0; i < faces.size(); i++) {
+            FontProperties.Face face = faces.get(i).face();
+            PDFontSupplier supplier = new PDFontSupplier(documentFonts.fonts().get(i));
+            for (Integer weight : face.getWeights()) {
+                builder.useFont(supplier, face.getFamily(), weight, face.getStyle(), face.isSubset());
+            }
+        }
+        builder.useCacheStore(PdfRendererBuilder.CacheStore.PDF_FONT_METRICS, fontMetrics);
+        return builder;
+    }
+
+    /** Polices déjà chargées dans un PDDocument donné. */
+    public record DocumentFonts(List<PDFont> fonts) { }
+
+    public int faceCount() {
+        return faces.size();
+    }
+
+    private static ByteBuffer load(Resource resource, boolean memoryMapped) {
+        try {
+            if (!resource.exists()) return null;
+            if (memoryMapped && resource.isFile()) {
+                try (FileChannel ch = FileChannel.open(resource.getFile().toPath(), StandardOpenOption.READ)) {
+                    MappedByteBuffer mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                    return mapped.asReadOnlyBuffer();
+                }
+            }
+            try (InputStream is = resource.getInputStream()) {
+                return ByteBuffer.wrap(is.readAllBytes()).asReadOnlyBuffer();
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot load font " + resource.getDescription(), e);
+        }
+    }
+
+    private record LoadedFace(FontProperties.Face face, ByteBuffer data) {
+        InputStream openStream() {
+            ByteBuffer view = data.duplicate();
+            if (view.hasArray()) {
+                return new ByteArrayInputStream(view.array(), view.arrayOffset() + view.position(), view.remaining());
+            }
+            return new ByteBufferInputStream(view);
+        }
+    }
+
+    /** Vue InputStream sur un buffer mappé (lecture seule, une instance par rendu). */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buf;
+
+        ByteBufferInputStream(ByteBuffer buf) { this.buf = buf; }
+
+        @Override public int read() {
+            return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+        }
+
+        @Override public int read(byte[] b, int off, int len) {
+            if (!buf.hasRemaining()) return -1;
+            int n = Math.min(len, buf.remaining());
+            buf.get(b, off, n);
+            return n;
+        }
+
+        @Override public int available() {
+            return buf.remaining();
+        }
+    }
+
+    /** Cache thread-safe partagé entre tous les rendus (métriques de police). */
+    private static final class SharedCache implements FSCacheEx<String, FSCacheValue> {
+        private final Map<String, FSCacheValue> map = new ConcurrentHashMap<>();
+
+        @Override public void put(String key, FSCacheValue value) {
+            map.put(key, value);
+        }
+
+        @Override public FSCacheValue get(String key, Callable<? extends FSCacheValue> loader) {
+            return map.computeIfAbsent(key, k -> {
+                try {
+                    return loader.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        }
+
+        @Override public FSCacheValue get(String key) {
+            return map.get(key);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.vonoy.pdf_pipeline.render;
+
+/** HTML produit par le template et images POD qu'il référence (pod://...). */
+public record HtmlDocument(String html, PodImages images) {
+
+    public static HtmlDocument of(String html) {
+        return new HtmlDocument(html, PodImages.none());
+    }
+}
@@ -0,0 +1,9 @@
+package com.vonoy.pdf_pipeline.render;
+
+import org.springframework.core.io.InputStreamSource;
+
+/**
+ * Image POD reçue en binaire (partie multipart), lue en flux par {@link PodImageProcessor}
+ * sans passer par une String base64.
+ */
+public record ImagePart(InputStreamSource source, long size, String contentType) { }
@@ -1,23 +1,48 @@
 package com.vonoy.pdf_pipeline.render;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.vonoy.pdf_pipeline.core.RenderTrace;
 import com.openhtmltopdf.svgsupport.BatikSVGDrawer;
 import org.springframework.stereotype.Component;
+import org.springframework.util.FastByteArrayOutputStream;
 
-import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
 import java.net.URL;
 
 @Component
 public class OpenHtmlToPdfRenderer implements PdfRenderer {
 
+    private final FontRegistry fontRegistry;
+
+    public OpenHtmlToPdfRenderer(FontRegistry fontRegistry) {
+        this.fontRegistry = fontRegistry;
+    }
+
     @Override
     public byte[] render(String html) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        render(html, out);
+        return out.toByteArrayUnsafe();
+    }
+
+    @Override
+    public void render(String html, OutputStream out) {
+        render(html, out, new RenderTrace());
+    }
+
+    @Override
+    public void render(String html, OutputStream out, RenderTrace trace) {
+        try {
+            long t0 = System.nanoTime();
             PdfRendererBuilder b = new PdfRendererBuilder();
             b.useFastMode();
 
             // Base URI pour permettre à <img th:src="@{/images/...}"> de se résoudre
             String baseUri = resolveStaticBaseUri(); // ex: file:/.../classes/static/
             b.withHtmlContent(html, baseUri);
+            // Rien hors de static/ : pas de file: ni d'hôte réseau chargé pendant le rendu.
+            b.useUriResolver(new StaticUriResolver(baseUri));
+
+            fontRegistry.applyTo(b);
 
             // (Optionnel) Support SVG si tu en utilises
             try { b.useSVGDrawer(new BatikSVGDrawer()); } catch (Throwable ignore) {}
@@ -25,9 +50,8 @@ public class OpenHtmlToPdfRenderer implements PdfRenderer {
             // (Optionnel) RTL par défaut si tu as du contenu arabe
             b.defaultTextDirection(PdfRendererBuilder.TextDirection.RTL);
 
-            b.toStream(baos);
-            b.run();
-            return baos.toByteArray();
+            b.toStream(trace.countOutput(out));
+            PdfBoxRendering.run(b, trace, t0);
         } catch (Exception e) {
             throw new RuntimeException("PDF render failed: " + e.getMessage(), e);
         }
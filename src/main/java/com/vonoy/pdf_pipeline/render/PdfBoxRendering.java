@@ -0,0 +1,74 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.openhtmltopdf.pdfboxout.PDFCreationListener;
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.vonoy.pdf_pipeline.core.RenderTrace;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Équivalent de {@code builder.run()} découpé en étapes mesurées : mise en page (layout) puis
+ * dessin et écriture PDFBox (write). En mode profil, compte aussi les polices du document
+ * juste avant l'enregistrement.
+ */
+public final class PdfBoxRendering {
+
+    private PdfBoxRendering() { }
+
+    /** {@code startNanos} : début de la préparation du builder, comptée dans la mise en page. */
+    public static void run(PdfRendererBuilder builder, RenderTrace trace, long startNanos) throws IOException {
+        try (PdfBoxRenderer renderer = builder.buildPdfRenderer()) {
+            if (trace.isProfile()) renderer.setListener(new FontCounter(trace, renderer.getListener()));
+
+            renderer.layout();
+            trace.stage(RenderTrace.LAYOUT, startNanos);
+            trace.size(RenderTrace.PAGES, renderer.getRootBox().getLayer().getPages().size());
+
+            long t0 = System.nanoTime();
+            renderer.createPDF();
+            trace.stage(RenderTrace.WRITE, t0);
+        }
+    }
+
+    /** onClose est appelé avant PDDocument.save : toutes les pages sont dessinées. */
+    private record FontCounter(RenderTrace trace, PDFCreationListener delegate) implements PDFCreationListener {
+
+        @Override public void preOpen(PdfBoxRenderer renderer) {
+            if (delegate != null) delegate.preOpen(renderer);
+        }
+
+        @Override public void preWrite(PdfBoxRenderer renderer, int pageCount) {
+            if (delegate != null) delegate.preWrite(renderer, pageCount);
+        }
+
+        @Override public void onClose(PdfBoxRenderer renderer) {
+            trace.size(RenderTrace.FONTS, countFonts(renderer.getPdfDocument()));
+            if (delegate != null) delegate.onClose(renderer);
+        }
+    }
+
+    /** Polices distinctes référencées par les pages (une police partagée n'est comptée qu'une fois). */
+    private static int countFonts(PDDocument doc) {
+        Set<COSBase> fonts = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (PDPage page : doc.getPages()) {
+            PDResources resources = page.getResources();
+            if (resources == null) continue;
+            if (!(resources.getCOSObject().getDictionaryObject(COSName.FONT) instanceof COSDictionary dict)) continue;
+            for (COSName name : dict.keySet()) {
+                COSBase font = dict.getDictionaryObject(name);
+                if (font != null) fonts.add(font);
+            }
+        }
+        return fonts.size();
+    }
+}
@@ -1,5 +1,13 @@
 package com.vonoy.pdf_pipeline.render;
 
+import com.vonoy.pdf_pipeline.core.RenderTrace;
+
+import java.io.OutputStream;
+
 public interface PdfRenderer {
     byte[] render(String html);
-}
\ No newline at end of file
+    void render(String html, OutputStream out);
+
+    /** Idem en comptant la mise en page, l'écriture, les pages et les octets produits dans {@code trace}. */
+    void render(String html, OutputStream out, RenderTrace trace);
+}
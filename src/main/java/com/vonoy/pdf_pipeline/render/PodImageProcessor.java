@@ -0,0 +1,318 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.stereotype.Component;
+import org.springframework.util.FastByteArrayOutputStream;
+import org.springframework.util.StreamUtils;
+
+import javax.imageio.*;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pré-traitement des photos POD (imageBase64 / imageBase64List) avant intégration au PDF.
+ * Chaque image est décodée une fois, réduite à {@code pdf.images.max-dpi} pour la zone imprimée
+ * ({@code box-width-mm} x {@code box-height-mm}), puis ré-encodée en JPEG ({@code jpeg-quality}) :
+ * les métadonnées EXIF disparaissent avec le ré-encodage. Les images d'un document sont décodées en parallèle
+ * par le thread appelant (le worker de rendu) et au plus {@code parallelism - 1} aides admises sur RenderExecutor :
+ * une aide n'est prise que si une place d'admission est libre, sinon le worker traite tout seul. Le décodage reste
+ * ainsi dans la borne {@code pdf.render.max-concurrency} au lieu de multiplier les threads CPU par document.
+ * Une image illisible (SVG...) ou qui ne gagnerait rien est gardée telle quelle.
+ * Sources acceptées : base64 / data URI (JSON), octets bruts (Smile/CBOR) et {@link ImagePart} (multipart),
+ * ces deux dernières étant décodées directement depuis leur flux.
+ */
+@Slf4j
+@Component
+public class PodImageProcessor {
+
+    private static final double MM_PER_INCH = 25.4;
+
+    private final RenderExecutor renderExecutor;
+    private final boolean enabled;
+    private final int parallelism;
+    private final int maxWidthPx;
+    private final int maxHeightPx;
+    private final float jpegQuality;
+    private final DistributionSummary savedBytes;
+
+    public PodImageProcessor(MeterRegistry meters,
+                             RenderExecutor renderExecutor,
+                             @Value("${pdf.images.enabled:true}") boolean enabled,
+                             @Value("${pdf.images.parallelism:2}") int parallelism,
+                             @Value("${pdf.images.max-dpi:150}") int maxDpi,
+                             @Value("${pdf.images.box-width-mm:180}") double boxWidthMm,
+                             @Value("${pdf.images.box-height-mm:180}") double boxHeightMm,
+                             @Value("${pdf.images.jpeg-quality:0.8}") float jpegQuality) {
+        this.renderExecutor = renderExecutor;
+        this.enabled = enabled;
+        this.parallelism = Math.max(1, parallelism);
+        this.maxWidthPx = (int) Math.round(boxWidthMm / MM_PER_INCH * maxDpi);
+        this.maxHeightPx = (int) Math.round(boxHeightMm / MM_PER_INCH * maxDpi);
+        this.jpegQuality = jpegQuality;
+        this.savedBytes = DistributionSummary.builder("pdf.images.saved")
+                .baseUnit("bytes")
+                .description("Octets économisés par document sur les images POD")
+                .register(meters);
+    }
+
+    /** Image prête à intégrer : octets décodés (binaire) et type MIME. */
+    public record PodImage(byte[] bytes, String mimeType) { }
+
+    /** Traite les images (String base64, byte[] ou ImagePart) d'un document ; l'ordre est conservé. */
+    public List<PodImage> process(List<?> sources) {
+        if (sources.isEmpty()) return List.of();
+        long start = System.nanoTime();
+
+        List<Task> tasks = sources.stream().map(Task::new).toList();
+        AtomicInteger next = new AtomicInteger();
+        Runnable drain = () -> {
+            for (int i; (i = next.getAndIncrement()) < tasks.size(); ) tasks.get(i).run();
+        };
+        int helpers = enabled ? Math.min(parallelism, sources.size()) - 1 : 0;
+        for (int i = 0; i < helpers; i++) {
+            Optional<RenderExecutor.Admission> admission = tryAdmit();
+            if (admission.isEmpty()) break;   // pool saturé : pas d'aide, le worker fait le reste
+            admission.get().submit(() -> {
+                drain.run();
+                return null;
+            });
+        }
+        drain.run();
+
+        List<PodImage> out = new ArrayList<>(sources.size());
+        long before = 0;
+        long after = 0;
+        for (Task task : tasks) {
+            Result r = task.join();
+            if (r == null) continue;
+            out.add(r.image());
+            before += r.originalBytes();
+            after += r.image().bytes().length;
+        }
+
+        savedBytes.record(Math.max(0, before - after));
+        log.info("POD images: {} image(s), {} KB -> {} KB (saved {} KB) in {} ms",
+                sources.size(), before / 1024, after / 1024, (before - after) / 1024,
+                (System.nanoTime() - start) / 1_000_000);
+        return out;
+    }
+
+    private Optional<RenderExecutor.Admission> tryAdmit() {
+        try {
+            return renderExecutor.tryAdmit(Duration.ZERO);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        }
+    }
+
+    /** Image d'un document, traitée par le premier thread (worker ou aide) qui la prend dans la file. */
+    private final class Task {
+        private final Object source;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+
+        Task(Object source) {
+            this.source = source;
+        }
+
+        void run() {
+            try {
+                result.complete(processOne(source));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+
+        /** Une tâche prise est en cours sur un thread vivant : l'attente est bornée par son traitement. */
+        Result join() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                if (e.getCause() instanceof Error err) throw err;
+                throw e;
+            }
+        }
+    }
+
+    /** null si le base64 est invalide : l'image aurait de toute façon été cassée dans le PDF. */
+    private Result processOne(Object source) {
+        ImagePart part = toPart(source);
+        if (part == null) return null;
+        if (!enabled) return keep(part);
+
+        BufferedImage img;
+        boolean downscale;
+        // MemoryCacheImageInputStream : pas de fichier cache ImageIO, seul le flux compressé est lu.
+        try (InputStream in = part.source().getInputStream();
+             ImageInputStream iis = new MemoryCacheImageInputStream(in)) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return keep(part); // format non géré : tel quel
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true); // métadonnées ignorées : l'EXIF n'est même pas lu
+                int w = reader.getWidth(0);
+                int h = reader.getHeight(0);
+                downscale = w > maxWidthPx || h > maxHeightPx;
+                // PNG/GIF déjà à la bonne taille (signatures, schémas) : le JPEG n'y gagnerait rien.
+                if (!downscale && !"jpeg".equalsIgnoreCase(reader.getFormatName())) {
+                    return keep(part);
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = subsampling(w, h);
+                if (step > 1) param.setSourceSubsampling(step, step, 0, 0);
+                img = reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return keep(part);
+        }
+
+        BufferedImage rgb = downscale ? resize(img) : toRgb(img);
+        byte[] jpeg = encodeJpeg(rgb);
+        if (!downscale && jpeg.length >= part.size()) {
+            return keep(part);
+        }
+        return new Result(new PodImage(jpeg, "image/jpeg"), part.size());
+    }
+
+    /** Source ramenée à un flux : le base64 est décodé une fois, byte[] et ImagePart sont lus tels quels. */
+    private static ImagePart toPart(Object source) {
+        if (source instanceof ImagePart part) return part;
+        if (source instanceof byte[] bytes) {
+            return new ImagePart(new ByteArrayResource(bytes), bytes.length, "application/octet-stream");
+        }
+        String s = String.valueOf(source);
+        byte[] bytes = decodeBase64(s);
+        return bytes == null ? null : new ImagePart(new ByteArrayResource(bytes), bytes.length, mimeOf(s));
+    }
+
+    /** Image gardée telle quelle ; une partie multipart n'est chargée en mémoire que dans ce cas. */
+    private static Result keep(ImagePart part) {
+        try {
+            byte[] bytes = part.source() instanceof ByteArrayResource r
+                    ? r.getByteArray()
+                    : StreamUtils.copyToByteArray(part.source().getInputStream());
+            return new Result(new PodImage(bytes, part.contentType()), bytes.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read POD image: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Facteur de sous-échantillonnage au décodage : la photo est décodée directement à une résolution
+     * encore supérieure ou égale à la cible (pas de raster pleine taille de 12 Mpx en mémoire),
+     * la réduction bilinéaire fait le reste.
+     */
+    private int subsampling(int w, int h) {
+        return Math.max(1, (int) Math.floor(Math.max((double) w / maxWidthPx, (double) h / maxHeightPx)));
+    }
+
+    /** Réduction par paliers (moitiés successives) : nettement moins d'aliasing qu'un seul drawImage. */
+    private BufferedImage resize(BufferedImage src) {
+        double scale = Math.min((double) maxWidthPx / src.getWidth(), (double) maxHeightPx / src.getHeight());
+        int targetW = Math.max(1, (int) Math.round(src.getWidth() * scale));
+        int targetH = Math.max(1, (int) Math.round(src.getHeight() * scale));
+
+        BufferedImage current = toRgb(src);
+        int w = current.getWidth();
+        int h = current.getHeight();
+        while (w != targetW || h != targetH) {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = next.createGraphics();
+            try {
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                g.drawImage(current, 0, 0, w, h, null);
+            } finally {
+                g.dispose();
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    /** JPEG n'a pas de canal alpha : on aplatit sur fond blanc. */
+    private static BufferedImage toRgb(BufferedImage src) {
+        if (src.getType() == BufferedImage.TYPE_INT_RGB) return src;
+        BufferedImage rgb = new BufferedImage(src.getWidth(), src.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        try {
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, src.getWidth(), src.getHeight());
+            g.drawImage(src, 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return rgb;
+    }
+
+    private byte[] encodeJpeg(BufferedImage img) {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        FastByteArrayOutputStream buf = new FastByteArrayOutputStream();
+        try (ImageOutputStream ios = ImageIO.createImageOutputStream(buf)) {
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(img, null, null), param); // aucune métadonnée : EXIF supprimé
+        } catch (IOException e) {
+            throw new IllegalStateException("JPEG encoding failed: " + e.getMessage(), e);
+        } finally {
+            writer.dispose();
+        }
+        return buf.toByteArrayUnsafe();
+    }
+
+    private static byte[] decodeBase64(String source) {
+        int comma = source.startsWith("data:") ? source.indexOf(',') : -1;
+        String b64 = comma >= 0 ? source.substring(comma + 1) : source;
+        try {
+            return Base64.getMimeDecoder().decode(b64);
+        } catch (IllegalArgumentException e) {
+            log.warn("Ignoring POD image with invalid base64: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /** Type MIME déclaré (data URI) ou deviné depuis l'en-tête base64, image/png par défaut. */
+    static String mimeOf(String source) {
+        if (source.startsWith("data:")) {
+            int end = source.indexOf(';');
+            if (end > 5) return source.substring(5, end);
+        }
+        if (source.length() < 16) return "image/png";
+        if (source.startsWith("iVBOR"))  return "image/png";
+        if (source.startsWith("/9j/"))   return "image/jpeg";
+        if (source.startsWith("R0lGOD")) return "image/gif";
+        if (source.startsWith("PHN2Zy")) return "image/svg+xml"; // "<svg" en base64
+        return "image/png";
+    }
+
+    private record Result(PodImage image, long originalBytes) { }
+}
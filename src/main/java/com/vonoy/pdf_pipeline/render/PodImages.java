@@ -0,0 +1,80 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.openhtmltopdf.extend.FSStream;
+import com.openhtmltopdf.extend.FSStreamFactory;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Images POD d'un document, servies à openhtmltopdf par le schéma {@code pod://{id}/{n}}.
+ * Le HTML ne contient que ces URI courtes : les octets déjà décodés passent directement au moteur,
+ * sans base64 dans le contexte Thymeleaf, dans la String HTML ni dans le parseur.
+ * Une instance par document, enregistrée sur son propre builder : rien à nettoyer après le rendu.
+ */
+public final class PodImages implements FSStreamFactory {
+
+    public static final String SCHEME = "pod";
+
+    private static final PodImages NONE = new PodImages(List.of());
+
+    private final String prefix;
+    private final List<PodImageProcessor.PodImage> images;
+
+    private PodImages(List<PodImageProcessor.PodImage> images) {
+        this.prefix = SCHEME + "://" + UUID.randomUUID() + "/";
+        this.images = List.copyOf(images);
+    }
+
+    public static PodImages of(List<PodImageProcessor.PodImage> images) {
+        return images.isEmpty() ? NONE : new PodImages(images);
+    }
+
+    public static PodImages none() {
+        return NONE;
+    }
+
+    /** URI à placer dans le HTML (th:src), dans l'ordre des images. */
+    public List<String> uris() {
+        List<String> uris = new ArrayList<>(images.size());
+        for (int i = 0; i < images.size(); i++) uris.add(prefix + i);
+        return uris;
+    }
+
+    public long totalBytes() {
+        return images.stream().mapToLong(i -> i.bytes().length).sum();
+    }
+
+    public PdfRendererBuilder applyTo(PdfRendererBuilder builder) {
+        if (!images.isEmpty()) builder.useProtocolsStreamImplementation(this, SCHEME);
+        return builder;
+    }
+
+    @Override
+    public FSStream getUrl(String url) {
+        byte[] bytes = null;
+        if (url != null && url.startsWith(prefix)) {
+            try {
+                int n = Integer.parseInt(url.substring(prefix.length()));
+                if (n >= 0 && n < images.size()) bytes = images.get(n).bytes();
+            } catch (NumberFormatException ignore) { }
+        }
+        return new ImageStream(bytes);
+    }
+
+    /** Ressource inconnue : getStream() renvoie null, openhtmltopdf la traite comme une image manquante. */
+    private record ImageStream(byte[] bytes) implements FSStream {
+        @Override public InputStream getStream() {
+            return bytes != null ? new ByteArrayInputStream(bytes) : null;
+        }
+
+        @Override public Reader getReader() {
+            return null;
+        }
+    }
+}
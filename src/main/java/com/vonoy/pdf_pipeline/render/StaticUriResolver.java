@@ -0,0 +1,29 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.openhtmltopdf.extend.FSUriResolver;
+import com.openhtmltopdf.swing.NaiveUserAgent;
+
+import java.util.Locale;
+
+/**
+ * Résolution des URI d'un document pour openhtmltopdf : seules les ressources sous {@code static/}
+ * (logo, CSS) et les URI {@code data:} sont chargées. Tout le reste (file:, http(s), chemins en "..")
+ * est ignoré : le rendu ne lit ni fichier local ni hôte réseau, même si le HTML en contient.
+ */
+final class StaticUriResolver implements FSUriResolver {
+    private final FSUriResolver delegate = new NaiveUserAgent.DefaultUriResolver();
+    private final String staticBase;
+
+    StaticUriResolver(String staticBase) {
+        this.staticBase = staticBase;
+    }
+
+    @Override
+    public String resolveURI(String baseUri, String uri) {
+        if (uri == null) return null;
+        if (uri.trim().toLowerCase(Locale.ROOT).startsWith("data:")) return uri;
+        String resolved = delegate.resolveURI(baseUri, uri);
+        if (resolved == null || staticBase == null || resolved.contains("..")) return null;
+        return resolved.startsWith(staticBase) ? resolved : null;
+    }
+}
@@ -0,0 +1,296 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.api.dto.PdfSaveResult;
+import com.vonoy.pdf_pipeline.core.PdfResultStore;
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FastByteArrayOutputStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Génération par lot : chaque PdfJobRequest est rendu en parallèle sur le pool de rendu
+ * (même code que /pdf et /pdf/partial) et ajouté au ZIP dès qu'il est prêt, sans attendre le plus lent.
+ * Une erreur sur un élément n'interrompt pas le lot ; elle est consignée dans manifest.json.
+ * <p>
+ * Les éléments peuvent aussi arriver au fil de l'eau ({@link Session}, publipostage) : au plus
+ * {@code max-in-flight} rendus en cours, la mémoire ne dépend pas de la taille du lot.
+ */
+@Slf4j
+@Service
+public class PdfBatchService {
+
+    private static final Duration ADMISSION_POLL = Duration.ofMillis(100);
+
+    private final PdfService pdfService;
+    private final RenderExecutor renderExecutor;
+    private final PdfResultStore results;
+    private final ObjectMapper objectMapper;
+    private final int maxItems;
+    private final int maxSyncItems;
+    private final int maxInFlight;
+
+    public PdfBatchService(PdfService pdfService,
+                           RenderExecutor renderExecutor,
+                           PdfResultStore results,
+                           ObjectMapper objectMapper,
+                           @Value("${pdf.batch.max-items:1000}") int maxItems,
+                           @Value("${pdf.batch.max-sync-items:200}") int maxSyncItems,
+                           @Value("${pdf.batch.max-in-flight:0}") int maxInFlight) {
+        this.pdfService = pdfService;
+        this.renderExecutor = renderExecutor;
+        this.results = results;
+        this.objectMapper = objectMapper;
+        this.maxItems = maxItems;
+        this.maxSyncItems = maxSyncItems;
+        // Par défaut un lot n'occupe pas plus que les workers du pool : les requêtes unitaires gardent la file.
+        this.maxInFlight = maxInFlight > 0 ? maxInFlight : renderExecutor.maxConcurrency();
+    }
+
+    /** Rejette (IllegalArgumentException) un lot vide ou trop grand, avant d'engager la réponse. */
+    public void validate(List<PdfJobRequest> jobs) {
+        if (jobs == null || jobs.isEmpty()) {
+            throw new IllegalArgumentException("Batch is empty");
+        }
+        if (jobs.size() > maxItems) {
+            throw new IllegalArgumentException("Batch too large: " + jobs.size() + " > " + maxItems);
+        }
+    }
+
+    /**
+     * Idem pour le ZIP renvoyé directement par /pdf/batch : il doit tenir dans {@code pdf.render.response-timeout} ;
+     * au-delà de {@code pdf.batch.max-sync-items}, passer par les jobs ou le publipostage.
+     */
+    public void validateSync(List<PdfJobRequest> jobs) {
+        validate(jobs);
+        if (jobs.size() > maxSyncItems) {
+            throw new IllegalArgumentException("Batch too large for a direct response: " + jobs.size() + " > "
+                    + maxSyncItems + ", submit the items to POST /pdf/jobs or as a file to POST /pdf/mail-merge");
+        }
+    }
+
+    /** ZIP de /pdf/batch ; le premier élément est rendu sur {@code first}, réservé avant d'engager la réponse. */
+    public void writeZip(List<PdfJobRequest> jobs, boolean partial, RenderExecutor.Admission.Worker first,
+                         OutputStream out) throws IOException {
+        try (first; Session session = zip(partial, out)) {
+            validateSync(jobs);
+            session.add(jobs.get(0), first);
+            for (PdfJobRequest job : jobs.subList(1, jobs.size())) session.add(job);
+            session.finish();
+        }
+    }
+
+    /** Lot ouvert écrit en ZIP dans {@code out} (manifest.json en dernière entrée). */
+    public Session zip(boolean partial, OutputStream out) {
+        return new Session(new ZipTarget(out), partial);
+    }
+
+    /** Lot ouvert dont chaque PDF est publié sous {@code dir} dans le répertoire de sortie, avec manifest.json. */
+    public Session directory(boolean partial, String dir) {
+        results.resolve(dir); // refuse un répertoire hors de pdf.output.dir
+        return new Session(new DirectoryTarget(dir), partial);
+    }
+
+    /**
+     * Lot alimenté élément par élément depuis un seul thread : {@link #add} bloque tant que
+     * {@code max-in-flight} rendus sont en cours, et écrit au passage les résultats terminés.
+     */
+    public final class Session implements AutoCloseable {
+        private final Target target;
+        private final boolean partial;
+        private final BlockingQueue<ItemResult> completed = new LinkedBlockingQueue<>();
+        private final Set<CompletableFuture<?>> running = ConcurrentHashMap.newKeySet();
+        private final List<ManifestEntry> manifest = new ArrayList<>();
+        private final Set<String> usedNames = new HashSet<>();
+        private int submitted;
+        private int done;
+
+        private Session(Target target, boolean partial) {
+            this.target = target;
+            this.partial = partial;
+        }
+
+        public void add(PdfJobRequest job) throws IOException {
+            try {
+                drain();
+                while (submitted - done >= maxInFlight) write(completed.take());
+                while (true) {
+                    Optional<RenderExecutor.Admission> admission = renderExecutor.tryAdmit(ADMISSION_POLL);
+                    if (admission.isPresent()) {
+                        submit(job, admission.get()::submit);
+                        return;
+                    }
+                    drain();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch interrupted", e);
+            }
+        }
+
+        /** Rend {@code job} sur un worker déjà réservé (premier élément d'un lot synchrone). */
+        public void add(PdfJobRequest job, RenderExecutor.Admission.Worker worker) {
+            submit(job, worker::submit);
+        }
+
+        /** Attend les rendus restants puis écrit manifest.json ; rend le manifest trié par index. */
+        public List<ManifestEntry> finish() throws IOException {
+            try {
+                while (done < submitted) write(completed.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Batch interrupted", e);
+            }
+            manifest.sort(Comparator.comparingInt(ManifestEntry::index));
+            target.finish(objectMapper.writerWithDefaultPrettyPrinter().writeValueAsBytes(manifest));
+            return manifest;
+        }
+
+        /** Client déconnecté ou erreur d'écriture : on n'attend pas les rendus restants. */
+        @Override
+        public void close() {
+            running.forEach(f -> f.cancel(false));
+        }
+
+        private void submit(PdfJobRequest job, Function<Callable<Object>, CompletableFuture<Object>> executor) {
+            int index = submitted++;
+            String name = uniqueName(entryName(index, job), index, usedNames);
+            CompletableFuture<Object> f = executor.apply(() -> target.render(job, partial, name));
+            running.add(f);
+            f.whenComplete((result, err) -> {
+                running.remove(f);
+                completed.add(new ItemResult(index, job, name, result, err));
+            });
+        }
+
+        private void drain() throws IOException {
+            for (ItemResult r; (r = completed.poll()) != null; ) write(r);
+        }
+
+        private void write(ItemResult r) throws IOException {
+            done++;
+            if (r.error() == null) {
+                manifest.add(ManifestEntry.ok(r, r.name(), target.write(r)));
+            } else {
+                ManifestEntry failed = ManifestEntry.failed(r);
+                log.warn("Batch item {} failed: {}", r.index(), failed.error());
+                manifest.add(failed);
+            }
+        }
+    }
+
+    /** Destination d'un lot : {@link #render} sur un worker, {@link #write} et {@link #finish} sur le thread du lot. */
+    private interface Target {
+        Object render(PdfJobRequest job, boolean partial, String name) throws Exception;
+
+        /** Publie un rendu réussi ; rend sa taille en octets. */
+        long write(ItemResult r) throws IOException;
+
+        void finish(byte[] manifestJson) throws IOException;
+    }
+
+    /** PDF bufferisé par le worker, entrée ZIP écrite par le thread du lot. */
+    private final class ZipTarget implements Target {
+        private final ZipOutputStream zip;
+
+        ZipTarget(OutputStream out) {
+            this.zip = new ZipOutputStream(out);
+            zip.setLevel(Deflater.BEST_SPEED); // les flux PDF sont déjà compressés
+        }
+
+        @Override
+        public Object render(PdfJobRequest job, boolean partial, String name) {
+            FastByteArrayOutputStream buf = new FastByteArrayOutputStream();
+            pdfService.write(job, partial, buf);
+            return buf.toByteArrayUnsafe();
+        }
+
+        @Override
+        public long write(ItemResult r) throws IOException {
+            byte[] bytes = (byte[]) r.result();
+            zip.putNextEntry(new ZipEntry(r.name()));
+            zip.write(bytes);
+            zip.closeEntry();
+            return bytes.length;
+        }
+
+        @Override
+        public void finish(byte[] manifestJson) throws IOException {
+            zip.putNextEntry(new ZipEntry("manifest.json"));
+            zip.write(manifestJson);
+            zip.closeEntry();
+            zip.finish();
+            zip.flush();
+        }
+    }
+
+    /** PDF écrit directement dans son fichier par le worker (.part puis renommage), sans byte[]. */
+    private final class DirectoryTarget implements Target {
+        private final String dir;
+
+        DirectoryTarget(String dir) {
+            this.dir = dir;
+        }
+
+        @Override
+        public Object render(PdfJobRequest job, boolean partial, String name) {
+            return results.save(dir + "/" + name, out -> pdfService.write(job, partial, out));
+        }
+
+        @Override
+        public long write(ItemResult r) {
+            return ((PdfSaveResult) r.result()).sizeBytes();
+        }
+
+        @Override
+        public void finish(byte[] manifestJson) {
+            results.save(dir + "/manifest.json", out -> out.write(manifestJson));
+        }
+    }
+
+    private static String entryName(int index, PdfJobRequest job) {
+        String raw = job.getOutputFileName();
+        if (raw == null || raw.isBlank()) return "document-" + (index + 1) + ".pdf";
+        String safe = raw.replaceAll("[\\\\/:*?\"<>|]", "_");
+        return safe.toLowerCase(Locale.ROOT).endsWith(".pdf") ? safe : safe + ".pdf";
+    }
+
+    private static String uniqueName(String name, int index, Set<String> used) {
+        return used.add(name) ? name : uniqueName((index + 1) + "-" + name, index, used);
+    }
+
+    record ItemResult(int index, PdfJobRequest job, String name, Object result, Throwable error) {
+        ItemResult {
+            if (error instanceof CompletionException && error.getCause() != null) error = error.getCause();
+        }
+    }
+
+    /** Ligne de manifest.json (le PDF lui-même n'y figure jamais). */
+    public record ManifestEntry(int index, String apiKey, String status, String fileName, Long sizeBytes, String error) {
+
+        static ManifestEntry ok(ItemResult r, String fileName, long size) {
+            return new ManifestEntry(r.index(), r.job().getApiKey(), "OK", fileName, size, null);
+        }
+
+        static ManifestEntry failed(ItemResult r) {
+            return new ManifestEntry(r.index(), r.job().getApiKey(), "ERROR", null, null, String.valueOf(r.error().getMessage()));
+        }
+    }
+}
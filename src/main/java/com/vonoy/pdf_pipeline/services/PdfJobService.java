@@ -0,0 +1,278 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobStatus;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobStatus.State;
+import com.vonoy.pdf_pipeline.api.dto.PdfSaveResult;
+import com.vonoy.pdf_pipeline.core.PdfPipeline;
+import com.vonoy.pdf_pipeline.core.PdfResultStore;
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import com.vonoy.pdf_pipeline.core.RenderRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+/**
+ * Jobs asynchrones : POST /pdf/jobs rend la main tout de suite, le rendu passe ensuite par le pool
+ * de rendu et le PDF est publié dans {@code pdf.output.dir/jobs} (écriture .part + renommage atomique).
+ * Les jobs terminés sont purgés après {@code pdf.jobs.retention}, ou plus tôt au-delà de
+ * {@code pdf.jobs.max-retained}.
+ */
+@Slf4j
+@Service
+public class PdfJobService implements DisposableBean {
+
+    static final String JOBS_DIR = "jobs";
+    private static final Duration ADMISSION_POLL = Duration.ofMillis(500);
+
+    private final PdfService pdfService;
+    private final PdfMergeService mergeService;
+    private final PdfPipeline pipeline;
+    private final RenderExecutor renderExecutor;
+    private final PdfResultStore results;
+    private final Duration retention;
+    private final int maxRetained;
+    private final ThreadPoolExecutor dispatcher;
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    public PdfJobService(PdfService pdfService,
+                         PdfMergeService mergeService,
+                         PdfPipeline pipeline,
+                         RenderExecutor renderExecutor,
+                         PdfResultStore results,
+                         @Value("${pdf.jobs.max-pending:200}") int maxPending,
+                         @Value("${pdf.jobs.max-in-flight:0}") int maxInFlight,
+                         @Value("${pdf.jobs.retention:1h}") Duration retention,
+                         @Value("${pdf.jobs.max-retained:1000}") int maxRetained) {
+        this.pdfService = pdfService;
+        this.mergeService = mergeService;
+        this.pipeline = pipeline;
+        this.renderExecutor = renderExecutor;
+        this.results = results;
+        this.retention = retention;
+        this.maxRetained = maxRetained;
+
+        // Comme pour les lots : les jobs n'occupent pas plus que les workers, les requêtes synchrones gardent la file.
+        int threads = maxInFlight > 0 ? maxInFlight : renderExecutor.maxConcurrency();
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("pdf-job-");
+        factory.setDaemon(true);
+        this.dispatcher = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, maxPending)), factory);
+    }
+
+    /** Enregistre le job et rend son statut (QUEUED) ; 400 si l'apiKey est inconnue, 429 si trop de jobs en attente. */
+    public PdfJobStatus submit(PdfJobRequest req, boolean partial) {
+        if (!PdfPipeline.hasSource(req)) {
+            pdfService.resolveTemplate(req.getApiKey());
+        } else {
+            PdfPipeline.checkParams(req);
+        }
+        return enqueue(new Job(UUID.randomUUID().toString(), req, null, partial));
+    }
+
+    /**
+     * Fusion d'un lot en un seul PDF (comme /pdf/batch?merge=true) exécutée en job : pas de limite de durée
+     * de réponse, jusqu'à {@code pdf.merge.max-items} documents. Un seul worker de rendu, comme en direct.
+     */
+    public PdfJobStatus submitMerge(List<PdfJobRequest> merge, boolean partial) {
+        mergeService.validate(merge);
+        return enqueue(new Job(UUID.randomUUID().toString(), null, List.copyOf(merge), partial));
+    }
+
+    private PdfJobStatus enqueue(Job job) {
+        jobs.put(job.id, job);
+        try {
+            dispatcher.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL,
+                    renderExecutor.retryAfterSeconds(), "Job queue is full");
+        }
+        return job.status();
+    }
+
+    public Optional<PdfJobStatus> status(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::status);
+    }
+
+    /** Fichier du job s'il est terminé avec succès et pas encore purgé. */
+    public Optional<Path> file(String id) {
+        Job job = jobs.get(id);
+        if (job == null || job.state != State.DONE) return Optional.empty();
+        Path p = results.resolve(fileOf(job.id));
+        return Files.isRegularFile(p) ? Optional.of(p) : Optional.empty();
+    }
+
+    private void run(Job job) {
+        try {
+            // Données d'un transport : récupérées sur l'exécuteur I/O avant de prendre une place de rendu,
+            // un amont lent (SOAP...) ne bloque donc pas un worker PDF.
+            PdfPipeline.Prepared prepared = null;
+            if (job.req != null && PdfPipeline.hasSource(job.req)) {
+                job.started();
+                prepared = pipeline.prepare(job.req);
+            }
+            PdfPipeline.Prepared ready = prepared;
+            RenderExecutor.Admission admission = admit();
+            PdfSaveResult saved = admission.submit(() -> {
+                if (ready == null) job.started();
+                return render(job, ready);
+            }).join();
+            job.done(saved.sizeBytes());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.failed("Interrupted");
+        } catch (Throwable t) {
+            Throwable cause = (t instanceof CompletionException && t.getCause() != null) ? t.getCause() : t;
+            log.warn("Job {} failed: {}", job.id, cause.getMessage());
+            job.failed(String.valueOf(cause.getMessage()));
+        }
+    }
+
+    /** Attend une place dans le pool de rendu : un job n'a pas de client HTTP à faire patienter. */
+    private RenderExecutor.Admission admit() throws InterruptedException {
+        while (true) {
+            Optional<RenderExecutor.Admission> admission = renderExecutor.tryAdmit(ADMISSION_POLL);
+            if (admission.isPresent()) return admission.get();
+        }
+    }
+
+    private PdfSaveResult render(Job job, PdfPipeline.Prepared prepared) {
+        String fileName = fileOf(job.id);
+        if (job.merge != null) {
+            return results.save(fileName, out -> mergeService.merge(job.merge, job.partial, out));
+        }
+        if (prepared != null) {
+            return pipeline.save(prepared, fileName);
+        }
+        return results.save(fileName, out -> pdfService.write(job.req, job.partial, out));
+    }
+
+    @Scheduled(fixedDelayString = "${pdf.jobs.sweep-interval:1m}")
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        List<Job> finished = jobs.values().stream()
+                .filter(j -> j.finishedAt != null)
+                .sorted(Comparator.comparing(j -> j.finishedAt))
+                .toList();
+        int excess = finished.size() - maxRetained;
+        int evicted = 0;
+        for (Job job : finished) {
+            if (excess-- > 0 || job.finishedAt.isBefore(cutoff)) {
+                jobs.remove(job.id);
+                results.delete(fileOf(job.id));
+                evicted++;
+            }
+        }
+        int orphans = deleteOrphans(cutoff);
+        if (evicted + orphans > 0) {
+            log.info("Job sweep: {} job(s) evicted, {} orphan file(s) deleted, {} job(s) kept",
+                    evicted, orphans, jobs.size());
+        }
+    }
+
+    /** Fichiers laissés par un redémarrage ou un crash en cours d'écriture. */
+    private int deleteOrphans(Instant cutoff) {
+        Path dir = results.resolve(JOBS_DIR);
+        if (!Files.isDirectory(dir)) return 0;
+        try (Stream<Path> files = Files.list(dir)) {
+            return (int) files
+                    .filter(p -> !jobs.containsKey(idOf(p)) && olderThan(p, cutoff))
+                    .filter(p -> results.delete(JOBS_DIR + "/" + p.getFileName()))
+                    .count();
+        } catch (IOException e) {
+            log.warn("Cannot list {}: {}", dir, e.getMessage());
+            return 0;
+        }
+    }
+
+    private static boolean olderThan(Path p, Instant cutoff) {
+        try {
+            return Files.getLastModifiedTime(p).toInstant().isBefore(cutoff);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String idOf(Path p) {
+        String name = p.getFileName().toString();
+        int dot = name.indexOf('.');
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static String fileOf(String id) {
+        return JOBS_DIR + "/" + id + ".pdf";
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+    }
+
+    private static final class Job {
+        final String id;
+        final PdfJobRequest req;
+        final List<PdfJobRequest> merge;    // fusion : req est null
+        final boolean partial;
+        final Instant submittedAt = Instant.now();
+        volatile State state = State.QUEUED;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        volatile Long sizeBytes;
+        volatile String error;
+
+        Job(String id, PdfJobRequest req, List<PdfJobRequest> merge, boolean partial) {
+            this.id = id;
+            this.req = req;
+            this.merge = merge;
+            this.partial = partial;
+        }
+
+        void started() {
+            startedAt = Instant.now();
+            state = State.RUNNING;
+        }
+
+        void done(long size) {
+            sizeBytes = size;
+            finishedAt = Instant.now();
+            state = State.DONE;
+        }
+
+        void failed(String message) {
+            error = message;
+            finishedAt = Instant.now();
+            state = State.FAILED;
+        }
+
+        PdfJobStatus status() {
+            String apiKey = req != null ? req.getApiKey() : merge.get(0).getApiKey();
+            return new PdfJobStatus(id, state, apiKey, submittedAt, startedAt, finishedAt,
+                    downloadName(), sizeBytes, error);
+        }
+
+        private String downloadName() {
+            if (merge != null) return "merged.pdf";
+            String raw = req.getOutputFileName();
+            if ((raw == null || raw.isBlank()) && req.getOutput() != null) raw = req.getOutput().getFileName();
+            if (raw == null || raw.isBlank()) return "result.pdf";
+            return raw.toLowerCase().endsWith(".pdf") ? raw : raw + ".pdf";
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vonoy.pdf_pipeline.api.dto.MailMergeRequest;
+import com.vonoy.pdf_pipeline.api.dto.MailMergeRequest.Output;
+import com.vonoy.pdf_pipeline.api.dto.MailMergeStatus;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobStatus.State;
+import com.vonoy.pdf_pipeline.core.PdfResultStore;
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import com.vonoy.pdf_pipeline.core.RenderRejectedException;
+import com.vonoy.pdf_pipeline.normalize.Normalizer;
+import com.vonoy.pdf_pipeline.parse.AnyDataParser;
+import com.vonoy.pdf_pipeline.transport.RawPayload;
+import com.vonoy.pdf_pipeline.transport.TransportRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Publipostage : un CSV / XLSX (transport ou fichier envoyé) en entrée, un PDF par ligne en sortie.
+ * Les lignes sont lues en flux ({@link AnyDataParser#forEachRow}) et données une à une à une
+ * {@link PdfBatchService.Session} : au plus {@code max-in-flight} rendus en cours, ni les lignes ni les PDF
+ * ne sont tous en mémoire. Sortie : un ZIP ({@code mail-merge/{id}.zip}) ou un fichier par PDF
+ * ({@code mail-merge/{id}/}), avec manifest.json, dans {@code pdf.output.dir}.
+ * Données de chaque ligne : ses colonnes, complétées par les règles de normalisation de l'apiKey.
+ */
+@Slf4j
+@Service
+public class PdfMailMergeService implements DisposableBean {
+
+    static final String DIR = "mail-merge";
+    private static final Pattern COLUMN = Pattern.compile("\\{([^{}]+)}");
+    private static final TypeReference<Map<String, Object>> MAP = new TypeReference<>() { };
+
+    private final PdfService pdfService;
+    private final PdfBatchService batchService;
+    private final AnyDataParser parser;
+    private final TransportRegistry transports;
+    private final List<Normalizer> normalizers;
+    private final PdfResultStore results;
+    private final RenderExecutor renderExecutor;
+    private final ObjectMapper objectMapper;
+    private final long maxRows;
+    private final Duration retention;
+    private final ThreadPoolExecutor dispatcher;
+    private final Map<String, Merge> merges = new ConcurrentHashMap<>();
+
+    public PdfMailMergeService(PdfService pdfService,
+                               PdfBatchService batchService,
+                               AnyDataParser parser,
+                               TransportRegistry transports,
+                               List<Normalizer> normalizers,
+                               PdfResultStore results,
+                               RenderExecutor renderExecutor,
+                               ObjectMapper objectMapper,
+                               @Value("${pdf.mail-merge.concurrency:1}") int concurrency,
+                               @Value("${pdf.mail-merge.max-pending:10}") int maxPending,
+                               @Value("${pdf.mail-merge.max-rows:100000}") long maxRows,
+                               @Value("${pdf.mail-merge.retention:24h}") Duration retention) {
+        this.pdfService = pdfService;
+        this.batchService = batchService;
+        this.parser = parser;
+        this.transports = transports;
+        this.normalizers = normalizers;
+        this.results = results;
+        this.renderExecutor = renderExecutor;
+        this.objectMapper = objectMapper;
+        this.maxRows = maxRows;
+        this.retention = retention;
+
+        // Chaque publipostage occupe déjà jusqu'à max-in-flight workers : on en lance peu à la fois.
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("pdf-merge-");
+        factory.setDaemon(true);
+        this.dispatcher = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, maxPending)), factory);
+    }
+
+    /**
+     * Enregistre le publipostage (QUEUED) ; 400 si l'apiKey est inconnue ou sans données, 429 si trop en attente.
+     * Un fichier envoyé est d'abord copié sur disque : il doit survivre à la requête HTTP.
+     */
+    public MailMergeStatus submit(MailMergeRequest req, InputStreamSource upload, String contentType) throws IOException {
+        pdfService.resolveTemplate(req.getApiKey());
+        if (upload == null && (req.getSource() == null || req.getSource().getType() == null)) {
+            throw new IllegalArgumentException("Missing source or uploaded file");
+        }
+        Merge merge = new Merge(UUID.randomUUID().toString(), req);
+        if (upload != null) {
+            merge.upload = Files.createTempFile("pdf-merge-", ".data");
+            merge.uploadType = contentType;
+            try (InputStream in = upload.getInputStream()) {
+                Files.copy(in, merge.upload, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException | RuntimeException e) {
+                merge.deleteUpload(); // envoi interrompu : pas de fichier orphelin dans le répertoire temporaire
+                throw e;
+            }
+        }
+        merges.put(merge.id, merge);
+        try {
+            dispatcher.execute(() -> run(merge));
+        } catch (RejectedExecutionException e) {
+            merges.remove(merge.id);
+            merge.deleteUpload();
+            throw new RenderRejectedException(RenderRejectedException.Reason.QUEUE_FULL,
+                    renderExecutor.retryAfterSeconds(), "Mail-merge queue is full");
+        }
+        return merge.status();
+    }
+
+    public Optional<MailMergeStatus> status(String id) {
+        return Optional.ofNullable(merges.get(id)).map(Merge::status);
+    }
+
+    /** ZIP d'un publipostage terminé (sortie ZIP uniquement). */
+    public Optional<Path> file(String id) {
+        Merge merge = merges.get(id);
+        if (merge == null || merge.state != State.DONE || merge.output() != Output.ZIP) return Optional.empty();
+        Path p = results.resolve(merge.target());
+        return Files.isRegularFile(p) ? Optional.of(p) : Optional.empty();
+    }
+
+    private void run(Merge merge) {
+        merge.started();
+        try {
+            List<PdfBatchService.ManifestEntry> manifest;
+            if (merge.output() == Output.FILES) {
+                try (PdfBatchService.Session session = batchService.directory(merge.req.isPartial(), merge.target())) {
+                    feed(merge, session);
+                    manifest = session.finish();
+                }
+            } else {
+                List<List<PdfBatchService.ManifestEntry>> holder = new ArrayList<>(1);
+                results.save(merge.target(), out -> {
+                    try (PdfBatchService.Session session = batchService.zip(merge.req.isPartial(), out)) {
+                        feed(merge, session);
+                        holder.add(session.finish());
+                    }
+                });
+                manifest = holder.get(0);
+            }
+            int ok = (int) manifest.stream().filter(e -> "OK".equals(e.status())).count();
+            merge.done(ok, manifest.size() - ok);
+            log.info("Mail-merge {} done: {} row(s), {} PDF(s), {} failure(s)", merge.id, merge.rows, ok, manifest.size() - ok);
+        } catch (Throwable t) {
+            Throwable cause = (t instanceof UncheckedIOException && t.getCause() != null) ? t.getCause() : t;
+            log.warn("Mail-merge {} failed: {}", merge.id, cause.getMessage());
+            merge.failed(String.valueOf(cause.getMessage()));
+        } finally {
+            merge.deleteUpload();
+        }
+    }
+
+    /** Lignes lues en flux ; {@code session.add} bloque tant que le lot a assez de rendus en cours. */
+    private void feed(Merge merge, PdfBatchService.Session session) throws IOException {
+        MailMergeRequest req = merge.req;
+        RawPayload payload = payload(merge);
+        parser.forEachRow(payload, row -> {
+            if (merge.rows >= maxRows) {
+                throw new IllegalArgumentException("Too many rows: more than " + maxRows);
+            }
+            merge.rows++;
+            PdfJobRequest job = new PdfJobRequest(req.getApiKey(), data(row, req.getApiKey()),
+                    fileName(req.getFileName(), row), req.getLanguage(), null, null, null, null);
+            try {
+                session.add(job);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private RawPayload payload(Merge merge) throws IOException {
+        Map<String, Object> meta = new HashMap<>();
+        Map<String, Object> config = merge.req.getSource() != null ? merge.req.getSource().getConfig() : null;
+        if (config != null && config.get("sheet") != null) meta.put("sheet", config.get("sheet"));
+        if (merge.upload != null) {
+            return new RawPayload(Files.newInputStream(merge.upload), merge.uploadType, meta);
+        }
+        RawPayload fetched = transports.get(merge.req.getSource().getType()).fetch(config, Map.of());
+        meta.putAll(fetched.meta());
+        return new RawPayload(fetched.stream(), fetched.contentType(), meta);
+    }
+
+    /** Colonnes de la ligne, complétées (ou remplacées) par les règles de normalisation de l'apiKey. */
+    private Map<String, Object> data(ObjectNode row, String apiKey) {
+        Map<String, Object> data = objectMapper.convertValue(row, MAP);
+        for (Normalizer n : normalizers) {
+            if (n.supports(apiKey)) {
+                // Une règle sans correspondance dans la ligne ne masque pas la colonne du même nom.
+                n.normalize(row, Map.of("apiKey", apiKey)).fields().forEach((k, v) -> {
+                    if (v != null) data.put(k, v);
+                });
+                break;
+            }
+        }
+        return data;
+    }
+
+    /** "BL-{deliveryId}.pdf" -> "BL-D123.pdf" ; null (nom par défaut du lot) si pas de modèle. */
+    private static String fileName(String pattern, ObjectNode row) {
+        if (pattern == null || pattern.isBlank()) return null;
+        Matcher m = COLUMN.matcher(pattern);
+        StringBuilder out = new StringBuilder();
+        while (m.find()) {
+            m.appendReplacement(out, Matcher.quoteReplacement(row.path(m.group(1)).asText("")));
+        }
+        m.appendTail(out);
+        return out.toString();
+    }
+
+    @Scheduled(fixedDelayString = "${pdf.jobs.sweep-interval:1m}")
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        merges.values().removeIf(m -> {
+            if (m.finishedAt == null || m.finishedAt.isAfter(cutoff)) return false;
+            // Les PDF d'une sortie FILES sont le livrable : seul le ZIP est supprimé.
+            if (m.output() == Output.ZIP) results.delete(m.target());
+            return true;
+        });
+    }
+
+    @Override
+    public void destroy() {
+        dispatcher.shutdownNow();
+    }
+
+    private static final class Merge {
+        final String id;
+        final MailMergeRequest req;
+        final Instant submittedAt = Instant.now();
+        Path upload;
+        String uploadType;
+        volatile State state = State.QUEUED;
+        volatile Instant startedAt;
+        volatile Instant finishedAt;
+        volatile long rows;
+        volatile Integer succeeded;
+        volatile Integer failedCount;
+        volatile String error;
+
+        Merge(String id, MailMergeRequest req) {
+            this.id = id;
+            this.req = req;
+        }
+
+        Output output() {
+            return req.getOutput() != null ? req.getOutput() : Output.ZIP;
+        }
+
+        String target() {
+            return DIR + "/" + id + (output() == Output.ZIP ? ".zip" : "");
+        }
+
+        void started() {
+            startedAt = Instant.now();
+            state = State.RUNNING;
+        }
+
+        void done(int ok, int failed) {
+            succeeded = ok;
+            failedCount = failed;
+            finishedAt = Instant.now();
+            state = State.DONE;
+        }
+
+        void failed(String message) {
+            error = message;
+            finishedAt = Instant.now();
+            state = State.FAILED;
+        }
+
+        void deleteUpload() {
+            if (upload == null) return;
+            try {
+                Files.deleteIfExists(upload);
+            } catch (IOException e) {
+                log.warn("Cannot delete {}: {}", upload, e.getMessage());
+            }
+        }
+
+        MailMergeStatus status() {
+            return new MailMergeStatus(id, state, req.getApiKey(), output(), submittedAt, startedAt, finishedAt,
+                    rows, succeeded, failedCount, target(), error);
+        }
+    }
+}
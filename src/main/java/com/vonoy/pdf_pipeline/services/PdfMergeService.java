@@ -0,0 +1,188 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.openhtmltopdf.pdfboxout.PdfBoxRenderer;
+import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.render.FontRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fusion d'un lot en un seul PDF, côté serveur.
+ * Chaque job passe par le même rendu openhtmltopdf que /pdf, mais ses pages sont ajoutées
+ * directement à un PDDocument unique adossé à un fichier scratch PDFBox : la mémoire reste bornée
+ * quel que soit le nombre de documents. Les polices ne sont embarquées qu'une fois, et les images
+ * identiques (logo...) sont dédupliquées pour n'être écrites qu'une fois dans le fichier final.
+ */
+@Slf4j
+@Service
+public class PdfMergeService {
+
+    private final PdfService pdfService;
+    private final FontRegistry fontRegistry;
+    private final long maxMainMemoryBytes;
+    private final long dedupeMaxBytes;
+    private final String scratchDir;
+    private final int maxItems;
+    private final int maxSyncItems;
+
+    public PdfMergeService(PdfService pdfService,
+                           FontRegistry fontRegistry,
+                           @Value("${pdf.merge.max-main-memory:16MB}") DataSize maxMainMemory,
+                           @Value("${pdf.merge.dedupe-image-max-size:1MB}") DataSize dedupeMaxSize,
+                           @Value("${pdf.merge.scratch-dir:}") String scratchDir,
+                           @Value("${pdf.merge.max-items:5000}") int maxItems,
+                           @Value("${pdf.merge.max-sync-items:200}") int maxSyncItems) {
+        this.pdfService = pdfService;
+        this.fontRegistry = fontRegistry;
+        this.maxMainMemoryBytes = maxMainMemory.toBytes();
+        this.dedupeMaxBytes = dedupeMaxSize.toBytes();
+        this.scratchDir = scratchDir;
+        this.maxItems = maxItems;
+        this.maxSyncItems = maxSyncItems;
+    }
+
+    /** Rejette (IllegalArgumentException) une fusion vide ou au-delà de {@code pdf.merge.max-items}. */
+    public void validate(List<PdfJobRequest> jobs) {
+        if (jobs == null || jobs.isEmpty()) {
+            throw new IllegalArgumentException("Batch is empty");
+        }
+        if (jobs.size() > maxItems) {
+            throw new IllegalArgumentException("Merge too large: " + jobs.size() + " > " + maxItems);
+        }
+    }
+
+    /**
+     * Idem pour /pdf/batch?merge=true : la fusion est séquentielle et doit tenir dans
+     * {@code pdf.render.response-timeout} ; au-delà de {@code pdf.merge.max-sync-items}, passer par un job.
+     */
+    public void validateSync(List<PdfJobRequest> jobs) {
+        validate(jobs);
+        if (jobs.size() > maxSyncItems) {
+            throw new IllegalArgumentException("Merge too large for a direct response: " + jobs.size() + " > "
+                    + maxSyncItems + ", submit it to POST /pdf/jobs/merge");
+        }
+    }
+
+    public void merge(List<PdfJobRequest> jobs, boolean partial, OutputStream out) throws IOException {
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+        if (scratchDir != null && !scratchDir.isBlank()) {
+            memory.setTempDir(new File(scratchDir));
+        }
+
+        try (PDDocument doc = new PDDocument(memory)) {
+            FontRegistry.DocumentFonts fonts = fontRegistry.embedInto(doc);
+            PDDocumentOutline outline = new PDDocumentOutline();
+            doc.getDocumentCatalog().setDocumentOutline(outline);
+            Map<String, PDImageXObject> sharedImages = new HashMap<>();
+
+            int failed = 0;
+            for (int i = 0; i < jobs.size(); i++) {
+                PdfJobRequest job = jobs.get(i);
+                int firstPage = doc.getNumberOfPages();
+                try {
+                    append(doc, fonts, job, partial);
+                } catch (Exception e) {
+                    // On retire les pages éventuellement ajoutées par le rendu en échec et on continue.
+                    while (doc.getNumberOfPages() > firstPage) doc.removePage(doc.getNumberOfPages() - 1);
+                    failed++;
+                    log.warn("Merge item {} failed: {}", i, e.getMessage());
+                    continue;
+                }
+                for (int p = firstPage; p < doc.getNumberOfPages(); p++) {
+                    dedupeImages(doc.getPage(p).getResources(), sharedImages);
+                }
+                if (doc.getNumberOfPages() > firstPage) {
+                    bookmark(outline, doc.getPage(firstPage), title(i, job));
+                }
+            }
+
+            if (doc.getNumberOfPages() == 0) {
+                throw new IllegalArgumentException("No document of the batch could be rendered");
+            }
+            log.info("Merged {} document(s) into {} page(s), {} failed, {} shared image(s)",
+                    jobs.size() - failed, doc.getNumberOfPages(), failed, sharedImages.size());
+            doc.save(out);
+        }
+    }
+
+    private void append(PDDocument doc, FontRegistry.DocumentFonts fonts, PdfJobRequest job, boolean partial)
+            throws IOException {
+        PdfRendererBuilder builder = pdfService.newBuilder(pdfService.renderHtml(job, partial));
+        fontRegistry.applyTo(builder, fonts);
+        builder.usePDDocument(doc);
+        try (PdfBoxRenderer renderer = builder.buildPdfRenderer()) {
+            renderer.layout();
+            renderer.createPDFWithoutClosing();
+        }
+    }
+
+    /**
+     * Remplace chaque image déjà vue (mêmes octets encodés, mêmes dimensions) par la première instance :
+     * les doublons ne sont plus référencés et PDFBox ne les écrit pas.
+     */
+    private void dedupeImages(PDResources resources, Map<String, PDImageXObject> shared) throws IOException {
+        if (resources == null) return;
+        for (COSName name : resources.getXObjectNames()) {
+            PDXObject xobject = resources.getXObject(name);
+            if (!(xobject instanceof PDImageXObject image)) continue;
+            COSStream stream = image.getCOSObject();
+            if (stream.getLength() > dedupeMaxBytes) continue;
+
+            String key = image.getWidth() + "x" + image.getHeight() + ":" + digest(stream);
+            PDImageXObject first = shared.putIfAbsent(key, image);
+            if (first != null && first.getCOSObject() != stream) {
+                resources.put(name, first);
+            }
+        }
+    }
+
+    private static String digest(COSStream stream) throws IOException {
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try (InputStream raw = stream.createRawInputStream()) {
+            byte[] buf = new byte[8192];
+            for (int n; (n = raw.read(buf)) > 0; ) md.update(buf, 0, n);
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static void bookmark(PDDocumentOutline outline, PDPage page, String title) {
+        PDOutlineItem item = new PDOutlineItem();
+        item.setTitle(title);
+        item.setDestination(page);
+        outline.addLast(item);
+    }
+
+    private static String title(int index, PdfJobRequest job) {
+        String name = job.getOutputFileName();
+        return (name == null || name.isBlank()) ? "document-" + (index + 1) : name;
+    }
+}
@@ -2,22 +2,30 @@ package com.vonoy.pdf_pipeline.services;
 
 import com.vonoy.pdf_pipeline.api.dto.Language;
 import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.core.RenderMetrics;
+import com.vonoy.pdf_pipeline.core.RenderTrace;
+import com.vonoy.pdf_pipeline.render.FontRegistry;
+import com.vonoy.pdf_pipeline.render.HtmlDocument;
+import com.vonoy.pdf_pipeline.render.PdfBoxRendering;
+import com.vonoy.pdf_pipeline.render.ImagePart;
+import com.vonoy.pdf_pipeline.render.PodImageProcessor;
+import com.vonoy.pdf_pipeline.render.PodImages;
+import com.vonoy.pdf_pipeline.template.ArabicShaper;
+import com.vonoy.pdf_pipeline.template.LabelBundles;
+import com.vonoy.pdf_pipeline.template.StaticAssetCache;
 
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.util.FastByteArrayOutputStream;
 import org.thymeleaf.TemplateEngine;
 import org.thymeleaf.context.Context;
-import com.itextpdf.text.pdf.languages.ArabicLigaturizer;
-import com.itextpdf.text.pdf.languages.LanguageProcessor;
 import com.openhtmltopdf.pdfboxout.PdfRendererBuilder;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
-import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.function.Function;
@@ -27,82 +35,154 @@ import java.util.function.Function;
 public class PdfService {
 
     private final TemplateEngine templateEngine;
+    private final FontRegistry fontRegistry;
+    private final StaticAssetCache assets;
+    private final LabelBundles labels;
+    private final ArabicShaper shaper;
+    private final PodImageProcessor imageProcessor;
+    private final RenderMetrics metrics;
 
     @Value("${pdf.output-dir:results}")
     private String outputDir;
 
+    private static final String LOGO_PATH = "images/logo.png";
+
     private static final Map<String, String> TEMPLATE_BY_KEY = Map.of(
         "invoice:v1",  "invoice.v1.html",
         "delivery:v1", "delivery.v1.html"
     );
 
 
-    public byte[] generate(PdfJobRequest req) {
-        final String apiKey = req.getApiKey();
+    /** apiKeys connues (une par template enregistré). */
+    public Set<String> apiKeys() {
+        return TEMPLATE_BY_KEY.keySet();
+    }
+
+    /** Vérifie l'apiKey et renvoie le template associé (IllegalArgumentException si inconnue). */
+    public String resolveTemplate(String apiKey) {
         final String templateId = TEMPLATE_BY_KEY.get(apiKey);
         if (templateId == null || templateId.isBlank()) {
             throw new IllegalArgumentException("Unknown apiKey: " + apiKey);
         }
+        return templateId;
+    }
+
+    /** Point d'entrée commun (lots, jobs) : même rendu que /pdf ou /pdf/partial selon {@code partial}. */
+    public void write(PdfJobRequest req, boolean partial, OutputStream out) {
+        write(req, partial, List.of(), out);
+    }
+
+    /**
+     * Idem avec des images POD reçues en binaire (multipart), ajoutées après celles de {@code data}.
+     * Le template partiel n'affiche pas d'images : elles y sont ignorées.
+     */
+    public void write(PdfJobRequest req, boolean partial, List<ImagePart> images, OutputStream out) {
+        write(req, partial, images, new RenderTrace(), out);
+    }
+
+    /**
+     * Idem en renseignant {@code trace} (durées par étape, tailles), publiée ensuite dans Micrometer.
+     * L'appelant peut y avoir déjà mis la taille de la requête ({@link RenderTrace#INPUT_BYTES}).
+     */
+    public void write(PdfJobRequest req, boolean partial, List<ImagePart> images, RenderTrace trace, OutputStream out) {
+        HtmlDocument doc = partial ? partialHtml(req, trace) : proofHtml(req, images, trace);
+        convertHtmlToPdf(doc, trace, out);
+        metrics.record(partial ? "partial" : "proof", req.getApiKey(), req.getLanguage(), trace);
+    }
+
+    public byte[] generate(PdfJobRequest req) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        generate(req, out);
+        return out.toByteArrayUnsafe();
+    }
+
+    /** Génère le PDF directement dans {@code out} (ex. le flux de la réponse HTTP), sans byte[] intermédiaire. */
+    public void generate(PdfJobRequest req, OutputStream out) {
+        write(req, false, out);
+    }
+
+    /** HTML du document, tel qu'il sera passé à openhtmltopdf (même contexte que /pdf ou /pdf/partial). */
+    public HtmlDocument renderHtml(PdfJobRequest req, boolean partial) {
+        RenderTrace trace = new RenderTrace();
+        return partial ? partialHtml(req, trace) : proofHtml(req, List.of(), trace);
+    }
+
+    /** Mise en forme arabe du rendu : sans le cache LRU pour une chauffe. */
+    private Function<String, String> shaping(RenderTrace trace) {
+        return trace.isWarmup() ? shaper::shapeUncached : shaper::shape;
+    }
+
+    private HtmlDocument proofHtml(PdfJobRequest req, List<ImagePart> parts, RenderTrace trace) {
+        long t0 = System.nanoTime();
+        final Function<String, String> shape = shaping(trace);
+        final String templateId = resolveTemplate(req.getApiKey());
 
-        final LanguageProcessor processor = new ArabicLigaturizer();
         final Context context = new Context();
 
         // Logo
         context.setVariable("logoUrl", "/images/logo.png");
-        context.setVariable("logoBase64",
-            encodeImageToBase64("src/main/resources/static/images/logo.png"));
+        context.setVariable("logoBase64", assets.dataUri(LOGO_PATH));
 
         // >>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>
         //      Extraction des données et gestion d'UNE OU PLUSIEURS images
         // <<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<
         final Map<String, Object> dataMap = req.getData();
-        final List<String> podImages = new ArrayList<>();
+        final List<Object> rawImages = new ArrayList<>();
 
         if (dataMap != null) {
-            // 1) Support historique: "imageBase64" (String)
+            // 1) Support historique: "imageBase64" (String, ou byte[] en Smile/CBOR)
             Object imgObj = dataMap.get("imageBase64");
             if (imgObj instanceof String s && !s.isBlank()) {
-                podImages.add(toDataUri(s.trim()));
+                rawImages.add(s.trim());
+            } else if (imgObj instanceof byte[] bytes && bytes.length > 0) {
+                rawImages.add(bytes);
             }
 
             // 2) Nouveau: "imageBase64List" (List<?>), chaque item peut être
             //    - un base64 nu
             //    - un data URI complet
+            //    - des octets bruts (Smile/CBOR)
             //    - null / vide (ignoré)
             Object listObj = dataMap.get("imageBase64List");
             if (listObj instanceof Collection<?> col) {
                 for (Object o : col) {
                     if (o == null) continue;
+                    if (o instanceof byte[] bytes) {
+                        if (bytes.length > 0) rawImages.add(bytes);
+                        continue;
+                    }
                     final String raw = String.valueOf(o).trim();
                     if (!raw.isBlank()) {
-                        podImages.add(toDataUri(raw));
+                        rawImages.add(raw);
                     }
                 }
             }
+        }
 
-            // Si vous souhaitez exposer l’ancienne variable "proofBase64"
-            // pour compat, on mappe la 1ère image si elle existe.
-            if (!podImages.isEmpty()) {
-                context.setVariable("proofBase64", podImages.get(0));
-            }
+        // 3) Parties binaires (multipart), lues en flux à la suite des images de "data".
+        rawImages.addAll(parts);
+
+        // 4) Décodage unique, réduction à la taille imprimée et ré-encodage JPEG (en parallèle).
+        //    Le HTML ne référence que des URI pod://, les octets vont directement au moteur PDF.
+        trace.stage(RenderTrace.CONTEXT, t0);
+        long tImages = System.nanoTime();
+        final PodImages podImages = PodImages.of(imageProcessor.process(rawImages));
+        trace.stage(RenderTrace.IMAGES, tImages);
+        trace.size(RenderTrace.IMAGE_COUNT, podImages.uris().size());
+        trace.size(RenderTrace.IMAGE_BYTES, podImages.totalBytes());
+        t0 = System.nanoTime();
+
+        // Si vous souhaitez exposer l’ancienne variable "proofBase64"
+        // pour compat, on mappe la 1ère image si elle existe.
+        if (!podImages.uris().isEmpty()) {
+            context.setVariable("proofBase64", podImages.uris().get(0));
         }
 
         // Liste d’images pour la boucle Thymeleaf: th:each="img : "
-        context.setVariable("podImages", podImages);
+        context.setVariable("podImages", podImages.uris());
 
         // Métadonnées & textes
-        context.setVariable("compTel1req", processor.process("ﻫﺎﺗﻒ:"));
-        context.setVariable("compTel2req", processor.process("ﻓﺎﻛﺲ:"));
-        context.setVariable("compTel1",   processor.process("4022251 6 +962 "));
-        context.setVariable("compTel2",   processor.process("4022626 6 +962"));
-        context.setVariable("emailadd",   processor.process("info@finehh.com"));
-        context.setVariable("link",       processor.process("www.finehh.com"));
-        context.setVariable("address",    processor.process("ص.ب. 154 عمان 11118 الأردن"));
-        context.setVariable("compName",   processor.process("ﺷﺮﻛﺔ ﻓﺎﻳﻦ ﻟﺼﻨﺎﻋﺔ ﺍﻟﻮﺭﻕ ﺍﻟﺼﺤﻲ ﺫ.ﻡ.ﻡ"));
-        context.setVariable("footerLine1", processor.process(
-            "لأي استفسارات أو لإعادة جدولة التسليم، يُرجى التواصل مع فريق التوزيع أو السائق مباشرةً."));
-        context.setVariable("footerLine2", processor.process(
-            "يُرجى التأكد من تواجد المستلم أو الممثل المفوَّض في موقع التسليم خلال الوقت المحدد."));
+        context.setVariables(labels.proof());
 
         if (dataMap != null) {
             Function<Object, String> asString = v -> v == null ? "" : String.valueOf(v).trim();
@@ -133,7 +213,7 @@ public class PdfService {
 
             String proofLine = "فيما يلي إثبات التسليم المنفَّذ من قبل السائق "
                 + driverName + " إلى العميل " + customerName + " بتاريخ " + deliveryDate;
-            context.setVariable("proofLine", processor.process(proofLine));
+            context.setVariable("proofLine", shape.apply(proofLine));
 
             try {
                 if (!deliveryDate.isBlank()) {
@@ -143,165 +223,87 @@ public class PdfService {
             } catch (Exception ignore) { }
         }
 
-        final String html = templateEngine.process(templateId, context);
-        return convertHtmlToPdf(html);
+        return new HtmlDocument(process(templateId, context, t0, trace), podImages);
+    }
+
+    /** Thymeleaf ; la préparation du contexte (depuis {@code contextStart}) est comptée à part. */
+    private String process(String templateId, Context context, long contextStart, RenderTrace trace) {
+        trace.stage(RenderTrace.CONTEXT, contextStart);
+        long t0 = System.nanoTime();
+        String html = templateEngine.process(templateId, context);
+        trace.stage(RenderTrace.TEMPLATE, t0);
+        trace.size(RenderTrace.HTML_LENGTH, html.length());
+        return html;
     }
 
     // ===== PDF rendering =====
-    private byte[] convertHtmlToPdf(String html) {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            PdfRendererBuilder builder = new PdfRendererBuilder();
-            builder.useFastMode();
-
-            String baseUri = resolveStaticBaseUri();
-            builder.withHtmlContent(html, baseUri);
-
-            // Police arabe : d’abord classpath, puis fallback fichier
-            boolean fontLoaded = false;
-            try (InputStream is = getClass().getResourceAsStream(
-                "/fonts/NotoNaskhArabic-VariableFont_wght.ttf")) {
-                if (is != null) {
-                    File tmp = File.createTempFile("noto-naskh-arabic", ".ttf");
-                    tmp.deleteOnExit();
-                    Files.copy(is, tmp.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
-                    builder.useFont(tmp, "Noto Naskh Arabic",
-                            400, PdfRendererBuilder.FontStyle.NORMAL, true);
-                    fontLoaded = true;
-                }
-            } catch (Exception ignore) { }
 
-            if (!fontLoaded) {
-                File fontFile = new File("src/main/resources/fonts/NotoNaskhArabic-VariableFont_wght.ttf");
-                if (fontFile.exists()) {
-                    builder.useFont(fontFile, "Noto Naskh Arabic",
-                            400, PdfRendererBuilder.FontStyle.NORMAL, true);
-                } else {
-                    System.err.println("Arabic font not found: " + fontFile.getAbsolutePath());
-                }
-            }
+    /** Rendu PDF seul d'un HTML déjà produit par {@link #renderHtml} (mesuré séparément dans les bancs JMH). */
+    public void convertHtmlToPdf(HtmlDocument doc, OutputStream out) {
+        convertHtmlToPdf(doc, new RenderTrace(), out);
+    }
+
+    private void convertHtmlToPdf(HtmlDocument doc, RenderTrace trace, OutputStream out) {
+        try {
+            long t0 = System.nanoTime();
+            PdfRendererBuilder builder = newBuilder(doc);
+
+            // Polices partagées (chargées une fois au démarrage)
+            fontRegistry.applyTo(builder);
 
-            builder.defaultTextDirection(PdfRendererBuilder.TextDirection.RTL);
-            builder.toStream(baos);
-            builder.run();
-            return baos.toByteArray();
+            builder.toStream(trace.countOutput(out));
+            PdfBoxRendering.run(builder, trace, t0);
         } catch (Exception e) {
             throw new RuntimeException("HTML->PDF failed: " + e.getMessage(), e);
         }
     }
 
+    /** Builder préconfiguré (mode rapide, base URI static/, images pod://, RTL), sans polices ni sortie. */
+    PdfRendererBuilder newBuilder(HtmlDocument doc) {
+        PdfRendererBuilder builder = new PdfRendererBuilder();
+        builder.useFastMode();
+
+        String baseUri = resolveStaticBaseUri();
+        builder.withHtmlContent(doc.html(), baseUri);
+        doc.images().applyTo(builder);
+
+        builder.defaultTextDirection(PdfRendererBuilder.TextDirection.RTL);
+        return builder;
+    }
+
     private String resolveStaticBaseUri() {
         URL u = getClass().getResource("/static/");
         return (u != null) ? u.toExternalForm() : new File(".").toURI().toString();
     }
 
-    /** Encode un fichier image local en data URI (optionnel). */
-    private String encodeImageToBase64(String imagePath) {
-        try {
-            File file = new File(imagePath);
-            if (!file.exists()) {
-                System.err.println("Image not found: " + imagePath);
-                return "";
-            }
-            byte[] imageBytes = Files.readAllBytes(file.toPath());
-            String lower = imagePath.toLowerCase();
-            String mime = lower.endsWith(".png") ? "image/png"
-                    : (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) ? "image/jpeg"
-                    : lower.endsWith(".svg") ? "image/svg+xml"
-                    : "application/octet-stream";
-            return "data:" + mime + ";base64," + Base64.getEncoder().encodeToString(imageBytes);
-        } catch (Exception e) {
-            System.err.println("Base64 encode error for " + imagePath + ": " + e.getMessage());
-            return "";
-        }
-    }
-
     // ===== Helpers =====
 
-    /** 
-     * Convertit un base64 nu OU un data URI en data URI standard.
-     * - Si déjà "data:image/…;base64,xxxx" => inchangé
-     * - Sinon on devine le mime (png/jpg/gif) via l’en-tête base64, défaut image/png.
-     */
-    private String toDataUri(String maybeBase64OrDataUri) {
-        if (maybeBase64OrDataUri.startsWith("data:image/")) {
-            return maybeBase64OrDataUri;
-        }
-        String mime = guessImageMimeFromBase64(maybeBase64OrDataUri);
-        return "data:" + mime + ";base64," + maybeBase64OrDataUri;
+    public byte[] generatePartialDeliveryPdf(PdfJobRequest req) {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        generatePartialDeliveryPdf(req, out);
+        return out.toByteArrayUnsafe();
     }
 
-    private String guessImageMimeFromBase64(String b64) {
-        if (b64 == null || b64.length() < 16) return "image/png";
-        String head = b64.substring(0, Math.min(16, b64.length()));
-        if (head.startsWith("iVBOR"))     return "image/png";
-        if (head.startsWith("/9j/"))      return "image/jpeg";
-        if (head.startsWith("R0lGOD"))    return "image/gif";
-        if (head.startsWith("PHN2Zy"))    return "image/svg+xml"; // "<svg" en base64
-        return "image/png";
+    public void generatePartialDeliveryPdf(PdfJobRequest req, OutputStream out) {
+        write(req, true, out);
     }
 
-
-    public byte[] generatePartialDeliveryPdf(PdfJobRequest req) {
-        final String templateId = TEMPLATE_BY_KEY.get(req.getApiKey());
-        if (templateId == null || templateId.isBlank()) {
-            throw new IllegalArgumentException("Unknown apiKey: " + req.getApiKey());
-        }
+    private HtmlDocument partialHtml(PdfJobRequest req, RenderTrace trace) {
+        long t0 = System.nanoTime();
+        final Function<String, String> shape = shaping(trace);
+        final String templateId = resolveTemplate(req.getApiKey());
 
         final Language lang = Optional.ofNullable(req.getLanguage()).orElse(Language.Arabic);
         final boolean isAr = (lang == Language.Arabic);
 
-        final LanguageProcessor arProcessor = new ArabicLigaturizer();
         final Context context = new Context(isAr ? Locale.forLanguageTag("ar") : Locale.ENGLISH);
 
         // Header / logo
         context.setVariable("logoUrl", "/images/logo.png");
-        context.setVariable("logoBase64", encodeImageToBase64("src/main/resources/static/images/logo.png"));
-
-        // Libellés société
-        if (isAr) {
-            context.setVariable("compTel1req", arProcessor.process("هاتف:"));
-            context.setVariable("compTel2req", arProcessor.process("فاكس:"));
-            context.setVariable("compTel1",    arProcessor.process("+962 6 4022251"));
-            context.setVariable("compTel2",    arProcessor.process("+962 6 4022626"));
-            context.setVariable("emailadd",    arProcessor.process("info@finehh.com"));
-            context.setVariable("link",        arProcessor.process("www.finehh.com"));
-            context.setVariable("title",    arProcessor.process("إثبات الإرجاع الجزئي / التسليم الجزئي"));
-            context.setVariable("customerNameLabel", arProcessor.process("اسم العميل :"));
-            context.setVariable("customerNumberLabel", arProcessor.process("رقم العميل :"));
-            context.setVariable("invNumberLabel", arProcessor.process("رقم الفاتورة"));
-            context.setVariable("orderNumberLabel", arProcessor.process("رقم الطلب :"));
-            context.setVariable("driverNameLabel", arProcessor.process(" اسم السائق :"));
-            context.setVariable("routeNumberLabel", arProcessor.process(" رقم المسار:"));
-            context.setVariable("deliveryDateLabel", arProcessor.process(" تاريخ التسليم :"));
-            context.setVariable("remarquesLabel", arProcessor.process("ملاحظات"));
-            context.setVariable("state", arProcessor.process("الوضع :"));
-            context.setVariable("address", arProcessor.process("ص.ب. 154 عمّان 11118 الأردن"));
-            context.setVariable("compName", arProcessor.process("شركة فاين لصناعة الورق الصحي ذ.م.م"));
-            context.setVariable("footerLine1", arProcessor.process("تم إنشاء هذا المستند تلقائياً بواسطة نظام فونوي لإدارة النقل"));
-            context.setVariable("footerLine2", arProcessor.process("© فونوي - جميع الحقوق محفوظة 2025"));
-            context.setVariable("SalesNumber", arProcessor.process("الرقم التسلسلي"));
-            context.setVariable("itemCode", arProcessor.process(" رمز الصنف"));
-            context.setVariable("description", arProcessor.process("الوصف :"));
-            context.setVariable("orderedQuantity", arProcessor.process("  المطلوبة الكمية "));
-            context.setVariable("returnedquantity", arProcessor.process(" المُرجعة الكمية "));
-            context.setVariable("notdeliveredquantity", arProcessor.process(" غير المُسلمة الكمية "));
-            context.setVariable("deliveredQuantity", arProcessor.process(" المُسلمة الكمية "));
-            context.setVariable("sum", arProcessor.process("المجموع"));
+        context.setVariable("logoBase64", assets.dataUri(LOGO_PATH));
 
-        } else {
-            context.setVariable("compTel1req", "Tel:");
-            context.setVariable("compTel2req", "Fax:");
-            context.setVariable("compTel1",    "+962 6 4022251");
-            context.setVariable("compTel2",    "+962 6 4022626");
-            context.setVariable("emailadd",    "info@finehh.com");
-            context.setVariable("link",        "www.finehh.com");
-            context.setVariable("address",     "P.O. Box 154 Amman 11118 Jordan");
-            context.setVariable("compName",    "Fine Hygienic Holding");
-            context.setVariable("footerLine1",
-                "This document was automatically generated by Vonoy TMS.");
-            context.setVariable("footerLine2",
-                "© Vonoy - All rights reserved 2025");
-        }
+        // Libellés société (mis en forme une fois au démarrage)
+        context.setVariables(labels.partial(lang));
 
         // Données dynamiques
         final Map<String, Object> dataMap = req.getData();
@@ -352,16 +354,16 @@ public class PdfService {
 
             // Injection champs
             if (isAr) {
-                context.setVariable("customerName",  processAr(arProcessor, customerName));
-                context.setVariable("driverName",    processAr(arProcessor, driverName));
-                context.setVariable("deliveryDate",  processAr(arProcessor, deliveryDate));
-                context.setVariable("reason",        processAr(arProcessor, reason));
-                context.setVariable("siteId",        processAr(arProcessor, siteId));
-                context.setVariable("invoiceNumber", processAr(arProcessor, invoiceNumber));
-                context.setVariable("salesOrder",    processAr(arProcessor, salesOrder));
-                context.setVariable("routeId",       processAr(arProcessor, routeId));
-                context.setVariable("proofLine",     processAr(arProcessor, proofLineAr));
-                context.setVariable("modeLabelAr",   processAr(arProcessor, modeLabelAr));
+                context.setVariable("customerName",  shape.apply(customerName));
+                context.setVariable("driverName",    shape.apply(driverName));
+                context.setVariable("deliveryDate",  shape.apply(deliveryDate));
+                context.setVariable("reason",        shape.apply(reason));
+                context.setVariable("siteId",        shape.apply(siteId));
+                context.setVariable("invoiceNumber", shape.apply(invoiceNumber));
+                context.setVariable("salesOrder",    shape.apply(salesOrder));
+                context.setVariable("routeId",       shape.apply(routeId));
+                context.setVariable("proofLine",     shape.apply(proofLineAr));
+                context.setVariable("modeLabelAr",   shape.apply(modeLabelAr));
             } else {
                 context.setVariable("customerName",  customerName);
                 context.setVariable("deliveryDate",  deliveryDate);
@@ -393,8 +395,8 @@ public class PdfService {
                     // champs texte
                     String code = stringOf(it.get("itemCode"));
                     String desc = stringOf(it.get("description"));
-                    row.put("itemCode",    isAr ? processAr(arProcessor, code) : code);
-                    row.put("description", isAr ? processAr(arProcessor, desc) : desc);
+                    row.put("itemCode",    isAr ? shape.apply(code) : code);
+                    row.put("description", isAr ? shape.apply(desc) : desc);
                     processedItems.add(row);
                 }
                 context.setVariable("items", processedItems);
@@ -413,14 +415,13 @@ public class PdfService {
         } else {
             context.setVariable("mode", "DELIVERY");
             if (isAr) {
-                context.setVariable("modeLabelAr", processAr(arProcessor, "تسليم جزئي"));
+                context.setVariable("modeLabelAr", shape.apply("تسليم جزئي"));
             } else {
                 context.setVariable("modeLabelAr", "Partial Delivery");
             }
         }
 
-        final String html = templateEngine.process(templateId, context);
-        return convertHtmlToPdf(html);
+        return HtmlDocument.of(process(templateId, context, t0, trace));
     }
 
     // ======= Ton convertisseur HTML -> PDF existant =======
@@ -437,12 +438,6 @@ public class PdfService {
 
 /* -------------------- Helpers -------------------- */
 
-// Ligaturise proprement, gère null/blank
-private static String processAr(LanguageProcessor p, String s) {
-    if (s == null || s.isBlank()) return "";
-    return p.process(s);
-}
-
 // toString sûr
 private static String stringOf(Object v) {
     return v == null ? "" : String.valueOf(v).trim();
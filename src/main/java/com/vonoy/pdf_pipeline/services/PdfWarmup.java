@@ -0,0 +1,134 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.vonoy.pdf_pipeline.api.dto.Language;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobRequest;
+import com.vonoy.pdf_pipeline.core.RenderTrace;
+import com.vonoy.pdf_pipeline.template.StaticAssetCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chauffe au démarrage : chaque template enregistré est rendu avec des données synthétiques,
+ * en arabe et en anglais, /pdf et /pdf/partial, pendant {@code pdf.warmup.iterations} itérations
+ * (chargement des classes PDFBox/openhtmltopdf/Batik/Thymeleaf, parsing des templates et polices, JIT).
+ * Ces rendus ({@link RenderTrace#warmup()}) restent hors de {@code pdf.render*} et du cache de mise en forme arabe ;
+ * ceux qui échouent sont comptés dans {@code pdf.warmup.failures} sans bloquer le démarrage.
+ * Spring Boot ne passe la readiness à ACCEPTING_TRAFFIC qu'après les ApplicationRunner :
+ * une instance froide ne reçoit donc pas de trafic.
+ */
+@Slf4j
+@Component
+public class PdfWarmup implements ApplicationRunner {
+
+    private static final String SAMPLE_IMAGE = "images/logo.png";
+    private static final List<Language> LANGUAGES = List.of(Language.Arabic, Language.English);
+
+    private final PdfService pdfService;
+    private final StaticAssetCache assets;
+    private final MeterRegistry meters;
+    private final boolean enabled;
+    private final int iterations;
+
+    public PdfWarmup(PdfService pdfService,
+                     StaticAssetCache assets,
+                     MeterRegistry meters,
+                     @Value("${pdf.warmup.enabled:true}") boolean enabled,
+                     @Value("${pdf.warmup.iterations:3}") int iterations) {
+        this.pdfService = pdfService;
+        this.assets = assets;
+        this.meters = meters;
+        this.enabled = enabled;
+        this.iterations = iterations;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled || iterations <= 0) return;
+
+        List<PdfJobRequest> samples = samples();
+        long[] nanos = new long[iterations];
+        long start = System.nanoTime();
+        int failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            long t0 = System.nanoTime();
+            for (PdfJobRequest req : samples) {
+                for (boolean partial : new boolean[] { false, true }) {
+                    try {
+                        pdfService.write(req, partial, List.of(), RenderTrace.warmup(), OutputStream.nullOutputStream());
+                    } catch (RuntimeException e) {
+                        // Une chauffe ratée ne doit pas empêcher le démarrage.
+                        failures++;
+                        log.warn("Warm-up render failed ({}, {}, partial={}): {}",
+                                req.getApiKey(), req.getLanguage(), partial, e.getMessage());
+                    }
+                }
+            }
+            nanos[i] = System.nanoTime() - t0;
+        }
+        long total = System.nanoTime() - start;
+
+        TimeGauge.builder("pdf.warmup.duration", () -> total, TimeUnit.NANOSECONDS).register(meters);
+        TimeGauge.builder("pdf.warmup.iteration", () -> nanos[0], TimeUnit.NANOSECONDS).tag("iteration", "first").register(meters);
+        TimeGauge.builder("pdf.warmup.iteration", () -> nanos[iterations - 1], TimeUnit.NANOSECONDS).tag("iteration", "last").register(meters);
+        Gauge.builder("pdf.warmup.renders", () -> (double) iterations * samples.size() * 2).register(meters);
+        int failed = failures;
+        Gauge.builder("pdf.warmup.failures", () -> failed).register(meters);
+
+        log.info("Warm-up done: {} template(s) x {} language(s), {} iteration(s) in {} ms; first {} ms, last {} ms{}",
+                pdfService.apiKeys().size(), LANGUAGES.size(), iterations, total / 1_000_000,
+                nanos[0] / 1_000_000, nanos[iterations - 1] / 1_000_000,
+                failed > 0 ? ", " + failed + " failure(s)" : "");
+    }
+
+    private List<PdfJobRequest> samples() {
+        StaticAssetCache.Asset image = assets.get(SAMPLE_IMAGE);
+        String imageBase64 = image != null ? Base64.getEncoder().encodeToString(image.bytes()) : null;
+
+        List<PdfJobRequest> samples = new ArrayList<>();
+        for (String apiKey : new TreeSet<>(pdfService.apiKeys())) {
+            for (Language language : LANGUAGES) {
+                samples.add(new PdfJobRequest(apiKey, sampleData(imageBase64), "warmup.pdf", language,
+                        null, null, null, null));
+            }
+        }
+        return samples;
+    }
+
+    private static Map<String, Object> sampleData(String imageBase64) {
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("lineId", i);
+            item.put("itemCode", "ITEM-" + i);
+            item.put("description", i % 2 == 0 ? "مناديل ورقية" : "Facial tissues");
+            item.put("orderedQty", 10);
+            item.put("returnedQty", 1);
+            item.put("undeliveredQty", 0);
+            item.put("deliveredQty", 9);
+            items.add(item);
+        }
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("customerName", "عميل تجريبي");
+        data.put("driverName", "Warm-up driver");
+        data.put("deliveryDate", "2025-01-01");
+        data.put("mode", "RETURN");
+        data.put("reason", "Warm-up");
+        data.put("invoiceNumber", "INV-0001");
+        data.put("salesOrder", "SO-0001");
+        data.put("routeId", "R-01");
+        data.put("items", items);
+        data.put("totals", Map.of("ordered", 50, "returned", 5, "undelivered", 0, "delivered", 45));
+        if (imageBase64 != null) data.put("imageBase64List", List.of(imageBase64));
+        return data;
+    }
+}
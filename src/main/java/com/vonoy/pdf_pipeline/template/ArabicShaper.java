@@ -0,0 +1,71 @@
+package com.vonoy.pdf_pipeline.template;
+
+import com.itextpdf.text.pdf.languages.ArabicLigaturizer;
+import com.itextpdf.text.pdf.languages.LanguageProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Mise en forme arabe (ligatures + ordre visuel) avec un cache LRU borné et thread-safe :
+ * les descriptions produit, noms de clients... reviennent d'un document à l'autre.
+ * ArabicLigaturizer est sans état (il délègue à BidiLine.processLTR), une seule instance suffit.
+ */
+@Component
+public class ArabicShaper {
+
+    private final LanguageProcessor ligaturizer = new ArabicLigaturizer();
+    private final Map<String, String> cache;
+    private final int maxLength;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ArabicShaper(MeterRegistry meters,
+                        @Value("${pdf.shaping.cache-size:10000}") int cacheSize,
+                        @Value("${pdf.shaping.max-cached-length:512}") int maxLength) {
+        this.maxLength = maxLength;
+        this.cache = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        };
+        this.hits = Counter.builder("pdf.shaping.cache").tag("result", "hit").register(meters);
+        this.misses = Counter.builder("pdf.shaping.cache").tag("result", "miss").register(meters);
+    }
+
+    /** Texte mis en forme pour openhtmltopdf ; "" pour null ou blanc. */
+    public String shape(String s) {
+        if (s == null || s.isBlank()) return "";
+        if (s.length() > maxLength) return ligaturizer.process(s); // textes libres longs : rarement répétés
+
+        String shaped;
+        synchronized (cache) {
+            shaped = cache.get(s);
+        }
+        if (shaped != null) {
+            hits.increment();
+            return shaped;
+        }
+        misses.increment();
+        shaped = ligaturizer.process(s);
+        synchronized (cache) {
+            cache.put(s, shaped);
+        }
+        return shaped;
+    }
+
+    /** Mise en forme hors cache et hors compteurs (rendus de chauffe : données synthétiques). */
+    public String shapeUncached(String s) {
+        return shapeOnce(s);
+    }
+
+    /** Mise en forme sans passer par le cache (libellés constants, calculés une fois). */
+    String shapeOnce(String s) {
+        return (s == null || s.isBlank()) ? "" : ligaturizer.process(s);
+    }
+}
@@ -0,0 +1,94 @@
+package com.vonoy.pdf_pipeline.template;
+
+import com.vonoy.pdf_pipeline.api.dto.Language;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Libellés constants des templates, par langue, mis en forme (arabe) une seule fois au démarrage.
+ * Les maps sont immuables et partagées par tous les rendus ({@code context.setVariables(...)}).
+ */
+@Component
+public class LabelBundles {
+
+    private final Map<String, Object> proof;
+    private final Map<Language, Map<String, Object>> partial = new EnumMap<>(Language.class);
+
+    public LabelBundles(ArabicShaper shaper) {
+        Map<String, Object> proof = new HashMap<>();
+        proof.put("compTel1req", shaper.shapeOnce("ﻫﺎﺗﻒ:"));
+        proof.put("compTel2req", shaper.shapeOnce("ﻓﺎﻛﺲ:"));
+        proof.put("compTel1",   shaper.shapeOnce("4022251 6 +962 "));
+        proof.put("compTel2",   shaper.shapeOnce("4022626 6 +962"));
+        proof.put("emailadd",   shaper.shapeOnce("info@finehh.com"));
+        proof.put("link",       shaper.shapeOnce("www.finehh.com"));
+        proof.put("address",    shaper.shapeOnce("ص.ب. 154 عمان 11118 الأردن"));
+        proof.put("compName",   shaper.shapeOnce("ﺷﺮﻛﺔ ﻓﺎﻳﻦ ﻟﺼﻨﺎﻋﺔ ﺍﻟﻮﺭﻕ ﺍﻟﺼﺤﻲ ﺫ.ﻡ.ﻡ"));
+        proof.put("footerLine1", shaper.shapeOnce(
+            "لأي استفسارات أو لإعادة جدولة التسليم، يُرجى التواصل مع فريق التوزيع أو السائق مباشرةً."));
+        proof.put("footerLine2", shaper.shapeOnce(
+            "يُرجى التأكد من تواجد المستلم أو الممثل المفوَّض في موقع التسليم خلال الوقت المحدد."));
+        this.proof = Map.copyOf(proof);
+
+        Map<String, Object> ar = new HashMap<>();
+        ar.put("compTel1req", shaper.shapeOnce("هاتف:"));
+        ar.put("compTel2req", shaper.shapeOnce("فاكس:"));
+        ar.put("compTel1",    shaper.shapeOnce("+962 6 4022251"));
+        ar.put("compTel2",    shaper.shapeOnce("+962 6 4022626"));
+        ar.put("emailadd",    shaper.shapeOnce("info@finehh.com"));
+        ar.put("link",        shaper.shapeOnce("www.finehh.com"));
+        ar.put("title",    shaper.shapeOnce("إثبات الإرجاع الجزئي / التسليم الجزئي"));
+        ar.put("customerNameLabel", shaper.shapeOnce("اسم العميل :"));
+        ar.put("customerNumberLabel", shaper.shapeOnce("رقم العميل :"));
+        ar.put("invNumberLabel", shaper.shapeOnce("رقم الفاتورة"));
+        ar.put("orderNumberLabel", shaper.shapeOnce("رقم الطلب :"));
+        ar.put("driverNameLabel", shaper.shapeOnce(" اسم السائق :"));
+        ar.put("routeNumberLabel", shaper.shapeOnce(" رقم المسار:"));
+        ar.put("deliveryDateLabel", shaper.shapeOnce(" تاريخ التسليم :"));
+        ar.put("remarquesLabel", shaper.shapeOnce("ملاحظات"));
+        ar.put("state", shaper.shapeOnce("الوضع :"));
+        ar.put("address", shaper.shapeOnce("ص.ب. 154 عمّان 11118 الأردن"));
+        ar.put("compName", shaper.shapeOnce("شركة فاين لصناعة الورق الصحي ذ.م.م"));
+        ar.put("footerLine1", shaper.shapeOnce("تم إنشاء هذا المستند تلقائياً بواسطة نظام فونوي لإدارة النقل"));
+        ar.put("footerLine2", shaper.shapeOnce("© فونوي - جميع الحقوق محفوظة 2025"));
+        ar.put("SalesNumber", shaper.shapeOnce("الرقم التسلسلي"));
+        ar.put("itemCode", shaper.shapeOnce(" رمز الصنف"));
+        ar.put("description", shaper.shapeOnce("الوصف :"));
+        ar.put("orderedQuantity", shaper.shapeOnce("  المطلوبة الكمية "));
+        ar.put("returnedquantity", shaper.shapeOnce(" المُرجعة الكمية "));
+        ar.put("notdeliveredquantity", shaper.shapeOnce(" غير المُسلمة الكمية "));
+        ar.put("deliveredQuantity", shaper.shapeOnce(" المُسلمة الكمية "));
+        ar.put("sum", shaper.shapeOnce("المجموع"));
+
+        Map<String, Object> en = new HashMap<>();
+        en.put("compTel1req", "Tel:");
+        en.put("compTel2req", "Fax:");
+        en.put("compTel1",    "+962 6 4022251");
+        en.put("compTel2",    "+962 6 4022626");
+        en.put("emailadd",    "info@finehh.com");
+        en.put("link",        "www.finehh.com");
+        en.put("address",     "P.O. Box 154 Amman 11118 Jordan");
+        en.put("compName",    "Fine Hygienic Holding");
+        en.put("footerLine1",
+            "This document was automatically generated by Vonoy TMS.");
+        en.put("footerLine2",
+            "© Vonoy - All rights reserved 2025");
+
+        for (Language lang : Language.values()) {
+            partial.put(lang, Map.copyOf(lang == Language.Arabic ? ar : en));
+        }
+    }
+
+    /** Libellés de /pdf (preuve de livraison, toujours en arabe). */
+    public Map<String, Object> proof() {
+        return proof;
+    }
+
+    /** Libellés de /pdf/partial : arabe, sinon anglais. */
+    public Map<String, Object> partial(Language lang) {
+        return partial.get(lang);
+    }
+}
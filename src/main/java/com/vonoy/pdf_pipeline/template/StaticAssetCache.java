@@ -0,0 +1,107 @@
+package com.vonoy.pdf_pipeline.template;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache des ressources statiques (classpath:/static/) encodées une seule fois en data URI.
+ * Fonctionne aussi depuis le jar packagé ; en mode dev (pdf.assets.watch=true) un fichier
+ * modifié sur disque est relu au prochain accès.
+ */
+@Slf4j
+@Component
+public class StaticAssetCache {
+
+    private static final String ROOT = "classpath:/static/";
+
+    private final ResourceLoader resourceLoader;
+    private final boolean watch;
+    private final Map<String, Asset> cache = new ConcurrentHashMap<>();
+
+    public StaticAssetCache(ResourceLoader resourceLoader,
+                            @Value("${pdf.assets.watch:false}") boolean watch,
+                            @Value("${pdf.assets.preload:images/logo.png}") List<String> preload) {
+        this.resourceLoader = resourceLoader;
+        this.watch = watch;
+        for (String path : preload) {
+            if (get(path) == null) log.warn("Static asset not found: {}{}", ROOT, path);
+        }
+    }
+
+    /** Data URI prête à l'emploi pour un th:src, ou "" si la ressource est absente. */
+    public String dataUri(String path) {
+        Asset a = get(path);
+        return a != null ? a.dataUri() : "";
+    }
+
+    /** Ressource chargée (octets + type MIME + data URI), ou null si absente. */
+    public Asset get(String path) {
+        String key = normalize(path);
+        Asset cached = cache.get(key);
+        if (cached != null && !(watch && cached.isStale())) return cached;
+
+        Asset loaded = load(key);
+        if (loaded == null) {
+            cache.remove(key);
+            return null;
+        }
+        cache.put(key, loaded);
+        return loaded;
+    }
+
+    private Asset load(String key) {
+        Resource res = resourceLoader.getResource(ROOT + key);
+        if (!res.exists()) return null;
+        try (InputStream is = res.getInputStream()) {
+            byte[] bytes = is.readAllBytes();
+            String mime = mimeOf(key);
+            String dataUri = "data:" + mime + ";base64," + Base64.getEncoder().encodeToString(bytes);
+            return new Asset(key, res, lastModified(res), bytes, mime, dataUri);
+        } catch (IOException e) {
+            log.warn("Cannot read static asset {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private static String normalize(String path) {
+        String p = path.trim();
+        while (p.startsWith("/")) p = p.substring(1);
+        if (p.startsWith("static/")) p = p.substring("static/".length());
+        return p;
+    }
+
+    static String mimeOf(String path) {
+        String lower = path.toLowerCase(Locale.ROOT);
+        return lower.endsWith(".png") ? "image/png"
+                : (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) ? "image/jpeg"
+                : lower.endsWith(".gif") ? "image/gif"
+                : lower.endsWith(".svg") ? "image/svg+xml"
+                : "application/octet-stream";
+    }
+
+    private static long lastModified(Resource res) {
+        try {
+            return res.isFile() ? res.lastModified() : -1L;
+        } catch (IOException e) {
+            return -1L;
+        }
+    }
+
+    public record Asset(String path, Resource resource, long lastModified,
+                        byte[] bytes, String mimeType, String dataUri) {
+        boolean isStale() {
+            return lastModified >= 0 && StaticAssetCache.lastModified(resource) != lastModified;
+        }
+    }
+}
@@ -6,17 +6,23 @@ import java.io.FileInputStream;
 import java.nio.file.Path;
 import java.util.Map;
 
+/** Transport fichier : {@code config.path}, limité à {@code pdf.transport.file.base-dir} ({@link SourcePolicy}). */
 @Component
 public class FileClient implements TransportClient {
     private final Tika tika = new Tika();
+    private final SourcePolicy policy;
+
+    FileClient(SourcePolicy policy) {
+        this.policy = policy;
+    }
 
     @Override public boolean supports(String type){ return "file".equalsIgnoreCase(type); }
 
     @Override public RawPayload fetch(Map<String,Object> cfg, Map<String,Object> params){
-        String path = (String) cfg.get("path");
+        Path path = policy.file((String) cfg.get("path"));
         try {
-            var is = new FileInputStream(Path.of(path).toFile());
-            String ct = tika.detect(path);
+            var is = new FileInputStream(path.toFile());
+            String ct = tika.detect(path.getFileName().toString());
             return new RawPayload(is, ct, Map.of());
         } catch (Exception e){ throw new RuntimeException(e); }
     }
@@ -0,0 +1,125 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Clients {@link HttpClient} partagés par les transports REST et SOAP (pool de connexions, HTTP/2 si le
+ * serveur le propose). Timeouts par source dans {@code config} : {@code connectTimeout} et
+ * {@code readTimeout} ("5s", "500ms" ou un nombre de millisecondes), par défaut {@code pdf.http.*}.
+ * Le readTimeout borne l'attente des en-têtes de la réponse, puis chaque attente de données du corps
+ * ({@link #body}). En-têtes de la source ({@code config.headers}) validés avant l'envoi ({@link #headers}).
+ */
+@Component
+class HttpClients implements DisposableBean {
+    /** Gérés par le client HTTP du JDK, qui refuse qu'on les fixe (jdk.httpclient.allowRestrictedHeaders). */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    /** Un client (et donc un pool) par connectTimeout : le JDK ne le règle qu'au niveau du client. */
+    private final Map<Duration, HttpClient> clients = new ConcurrentHashMap<>();
+    /** Échéances de lecture des corps de réponse : un thread pour toutes les connexions. */
+    private final ScheduledExecutorService deadlines;
+
+    HttpClients(@Value("${pdf.http.connect-timeout:5s}") Duration connectTimeout,
+                @Value("${pdf.http.read-timeout:60s}") Duration readTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        CustomizableThreadFactory factory = new CustomizableThreadFactory("http-read-deadline-");
+        factory.setDaemon(true);
+        this.deadlines = Executors.newSingleThreadScheduledExecutor(factory);
+    }
+
+    /** Timeout de la requête ({@code readTimeout} de la source ou défaut). */
+    Duration readTimeout(Map<String,Object> cfg) {
+        return duration(cfg.get("readTimeout"), readTimeout);
+    }
+
+    /** Envoie {@code request} ; le corps de la réponse reste à lire (et à fermer) par l'appelant. */
+    HttpResponse<InputStream> send(Map<String,Object> cfg, HttpRequest request) {
+        HttpClient client = clients.computeIfAbsent(duration(cfg.get("connectTimeout"), connectTimeout),
+                d -> HttpClient.newBuilder()
+                        .version(HttpClient.Version.HTTP_2)
+                        .connectTimeout(d)
+                        // Une redirection pourrait sortir des hôtes autorisés (SourcePolicy) : jamais suivie.
+                        .followRedirects(HttpClient.Redirect.NEVER)
+                        .build());
+        String call = request.method() + " " + request.uri();
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("HTTP " + call + " failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("HTTP " + call + " interrupted", e);
+        }
+    }
+
+    /** Corps de {@code resp} : la lecture échoue si aucune donnée n'arrive pendant le readTimeout de la source. */
+    InputStream body(Map<String,Object> cfg, HttpResponse<InputStream> resp) {
+        return new ReadDeadlineInputStream(resp.body(), readTimeout(cfg), deadlines);
+    }
+
+    /**
+     * Ajoute {@code config.headers} à {@code request} et les renvoie. IllegalArgumentException (400) si ce
+     * n'est pas un objet de valeurs simples, ou pour un en-tête que le client HTTP gère lui-même (Host, Content-Length...).
+     */
+    static Map<String,String> headers(Map<String,Object> cfg, HttpRequest.Builder request) {
+        Object raw = cfg.get("headers");
+        if (raw == null) return Map.of();
+        if (!(raw instanceof Map<?, ?> map)) {
+            throw new IllegalArgumentException("Source headers must be an object of name/value pairs");
+        }
+        Map<String,String> headers = new LinkedHashMap<>();
+        map.forEach((name, value) -> {
+            if (!(value instanceof String || value instanceof Number || value instanceof Boolean)) {
+                throw new IllegalArgumentException("Source header '" + name + "' must be a string");
+            }
+            String key = String.valueOf(name).trim();
+            if (RESTRICTED_HEADERS.contains(key.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Source header '" + key + "' is not allowed (set by the HTTP client)");
+            }
+            try {
+                request.header(key, value.toString());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Invalid source header '" + key + "': " + e.getMessage());
+            }
+            headers.put(key, value.toString());
+        });
+        return headers;
+    }
+
+    @Override
+    public void destroy() {
+        deadlines.shutdownNow();
+    }
+
+    static void close(InputStream in) {
+        try { in.close(); } catch (IOException ignored) { }
+    }
+
+    private static Duration duration(Object value, Duration fallback) {
+        if (value == null) return fallback;
+        if (value instanceof Number n) return Duration.ofMillis(n.longValue());
+        return DurationStyle.detectAndParse(value.toString());
+    }
+}
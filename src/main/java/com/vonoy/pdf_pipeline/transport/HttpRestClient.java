@@ -1,28 +1,91 @@
 package com.vonoy.pdf_pipeline.transport;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.*;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
 
-import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
+/**
+ * Transport REST sur {@link HttpClients} (pool de connexions, HTTP/2, timeouts par source).
+ * Le corps de la réponse n'est jamais chargé en mémoire : {@link RawPayload#stream()} lit directement
+ * la connexion, le parseur le consomme au fil de l'eau puis le ferme (la connexion retourne au pool).
+ */
 @Component
 public class HttpRestClient implements TransportClient {
-    private final RestTemplate rt;
-    public HttpRestClient(RestTemplateBuilder builder){ this.rt = builder.build(); }
+    private final ObjectMapper mapper;
+    private final HttpClients http;
+    private final SourcePolicy policy;
+
+    public HttpRestClient(ObjectMapper mapper, HttpClients http, SourcePolicy policy) {
+        this.mapper = mapper;
+        this.http = http;
+        this.policy = policy;
+    }
 
     @Override public boolean supports(String type){ return "rest".equalsIgnoreCase(type) || "http".equalsIgnoreCase(type); }
 
     @Override public RawPayload fetch(Map<String,Object> cfg, Map<String,Object> params){
         String url = (String) cfg.get("url");
-        String method = (String) cfg.getOrDefault("method", "GET");
-        Map<String,String> headersMap = (Map<String,String>) cfg.getOrDefault("headers", Map.of());
-        HttpHeaders headers = new HttpHeaders(); headersMap.forEach(headers::add);
-        Object body = cfg.get("body");
-
-        ResponseEntity<byte[]> resp = rt.exchange(url, HttpMethod.valueOf(method), new HttpEntity<>(body, headers), byte[].class);
-        String ct = resp.getHeaders().getContentType() != null ? resp.getHeaders().getContentType().toString() : "application/octet-stream";
-        return new RawPayload(new ByteArrayInputStream(resp.getBody()), ct, Map.of("status", resp.getStatusCode().value()));
+        String method = ((String) cfg.getOrDefault("method", "GET")).toUpperCase();
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(policy.url(url))
+                .timeout(http.readTimeout(cfg))
+                .method(method, body(cfg.get("body")));
+        Map<String,String> headersMap = HttpClients.headers(cfg, request);
+        if (cfg.get("body") != null && !hasHeader(headersMap, "Content-Type")) {
+            request.header("Content-Type", cfg.get("body") instanceof String ? "text/plain; charset=UTF-8" : "application/json");
+        }
+
+        HttpResponse<InputStream> resp = http.send(cfg, request.build());
+        int status = resp.statusCode();
+        if (status >= 400) {
+            // Même comportement que RestTemplate : une erreur amont n'est pas passée au parseur.
+            HttpClients.close(resp.body());
+            throw new RuntimeException("HTTP " + method + " " + url + " returned " + status);
+        }
+        if (status >= 300 && status != 304) {
+            HttpClients.close(resp.body());
+            throw new RuntimeException("HTTP " + method + " " + url + " returned " + status + " (redirects are not followed)");
+        }
+        String ct = resp.headers().firstValue("Content-Type").orElse("application/octet-stream");
+        // ETag / Cache-Control pour TransportCache ; un 304 (If-None-Match) arrive avec un corps vide.
+        Map<String,Object> meta = new HashMap<>();
+        meta.put("status", status);
+        resp.headers().firstValue("ETag").ifPresent(v -> meta.put("etag", v));
+        resp.headers().firstValue("Cache-Control").ifPresent(v -> meta.put("cacheControl", v));
+        return new RawPayload(decoded(resp, http.body(cfg, resp)), ct, meta);
+    }
+
+    private HttpRequest.BodyPublisher body(Object body) {
+        if (body == null) return HttpRequest.BodyPublishers.noBody();
+        if (body instanceof String s) return HttpRequest.BodyPublishers.ofString(s);
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Invalid REST body: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    /** HttpClient ne décompresse pas : on le fait si l'appelant a demandé du gzip dans ses en-têtes. */
+    private static InputStream decoded(HttpResponse<InputStream> resp, InputStream body) {
+        String encoding = resp.headers().firstValue("Content-Encoding").orElse("");
+        if (!"gzip".equalsIgnoreCase(encoding)) return body;
+        try {
+            return new GZIPInputStream(body, 8192);
+        } catch (IOException e) {
+            HttpClients.close(body);
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean hasHeader(Map<String,String> headers, String name) {
+        return headers.keySet().stream().anyMatch(name::equalsIgnoreCase);
     }
 }
@@ -0,0 +1,97 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Corps de réponse HTTP borné dans le temps : si aucun octet n'arrive pendant {@code idleTimeout}
+ * alors qu'une lecture attend, le flux est fermé (ce qui débloque la lecture du JDK) et la lecture
+ * échoue en {@link SocketTimeoutException}. Un seul contrôle planifié par flux, replanifié à chaque
+ * échéance d'après la date du dernier octet reçu.
+ */
+final class ReadDeadlineInputStream extends FilterInputStream {
+    private final long idleNanos;
+    private final ScheduledExecutorService timer;
+    private volatile long lastProgress = System.nanoTime();
+    private volatile boolean reading;
+    private volatile boolean expired;
+    private volatile boolean closed;
+
+    ReadDeadlineInputStream(InputStream in, Duration idleTimeout, ScheduledExecutorService timer) {
+        super(in);
+        this.idleNanos = idleTimeout.toNanos();
+        this.timer = timer;
+        schedule(idleNanos);
+    }
+
+    @Override
+    public int read() throws IOException {
+        begin();
+        try {
+            return finished(in.read());
+        } catch (IOException e) {
+            throw expired ? timeout() : e;
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        begin();
+        try {
+            return finished(in.read(b, off, len));
+        } catch (IOException e) {
+            throw expired ? timeout() : e;
+        } finally {
+            end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        super.close();
+    }
+
+    private void begin() throws IOException {
+        if (expired) throw timeout();
+        lastProgress = System.nanoTime();
+        reading = true;
+    }
+
+    /** Fin du corps : plus rien à surveiller. */
+    private int finished(int n) {
+        if (n < 0) closed = true;
+        return n;
+    }
+
+    private void end() {
+        reading = false;
+        lastProgress = System.nanoTime();
+    }
+
+    private void schedule(long delayNanos) {
+        timer.schedule(this::check, Math.max(delayNanos, 1), TimeUnit.NANOSECONDS);
+    }
+
+    private void check() {
+        if (closed) return;
+        long idle = System.nanoTime() - lastProgress;
+        if (reading && idle >= idleNanos) {
+            expired = true;
+            HttpClients.close(in);
+            return;
+        }
+        schedule(idleNanos - (reading ? idle : 0));
+    }
+
+    private SocketTimeoutException timeout() {
+        return new SocketTimeoutException("No response data received within " + Duration.ofNanos(idleNanos));
+    }
+}
@@ -0,0 +1,138 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Contenu du {@code soap:Body} (premier élément) relu en octets UTF-8 à la demande : les événements StAX
+ * de la réponse sont réécrits au fil des {@link #read} dans un petit tampon, jamais tout le message.
+ * Les namespaces déclarés sur l'enveloppe sont redéclarés (writer en mode "repairing").
+ */
+final class SoapBodyStream extends InputStream {
+
+    private static final XMLOutputFactory OUTPUT = outputFactory();
+    private static final int CHUNK = 8192;
+
+    private final XMLStreamReader reader;
+    private final InputStream source;
+    private final Buffer buffer = new Buffer();
+    private final XMLStreamWriter writer;
+    private int depth;
+    private boolean done;
+    private int pos;
+
+    /** {@code reader} positionné sur le START_ELEMENT du premier enfant du Body. */
+    SoapBodyStream(XMLStreamReader reader, InputStream source) throws XMLStreamException {
+        this.reader = reader;
+        this.source = source;
+        this.writer = OUTPUT.createXMLStreamWriter(buffer, "UTF-8");
+        writer.writeStartDocument("UTF-8", "1.0");
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) return -1;
+        return buffer.bytes()[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!fill()) return -1;
+        int n = Math.min(len, buffer.size() - pos);
+        System.arraycopy(buffer.bytes(), pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException ignored) {
+            // le flux HTTP est fermé juste après
+        } finally {
+            source.close();
+        }
+    }
+
+    /** Au moins un octet disponible dans le tampon, sauf fin du Body. */
+    private boolean fill() throws IOException {
+        if (pos < buffer.size()) return true;
+        buffer.reset();
+        pos = 0;
+        try {
+            // Le writer a son propre tampon : vidé régulièrement pour mesurer ce qui est prêt.
+            for (int events = 1; !done; events++) {
+                copyEvent();
+                if (events % 64 == 0) {
+                    writer.flush();
+                    if (buffer.size() >= CHUNK) break;
+                }
+            }
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid SOAP response: " + e.getMessage(), e);
+        }
+        return buffer.size() > 0;
+    }
+
+    private void copyEvent() throws XMLStreamException {
+        switch (reader.getEventType()) {
+            case XMLStreamConstants.START_ELEMENT -> {
+                depth++;
+                writer.writeStartElement(prefix(reader.getPrefix()), reader.getLocalName(), ns(reader.getNamespaceURI()));
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    writer.writeNamespace(prefix(reader.getNamespacePrefix(i)), reader.getNamespaceURI(i));
+                }
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    writer.writeAttribute(prefix(reader.getAttributePrefix(i)), ns(reader.getAttributeNamespace(i)),
+                            reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+            }
+            case XMLStreamConstants.END_ELEMENT -> {
+                writer.writeEndElement();
+                if (--depth == 0) {
+                    writer.writeEndDocument();
+                    done = true;
+                    return;
+                }
+            }
+            case XMLStreamConstants.CHARACTERS, XMLStreamConstants.SPACE, XMLStreamConstants.CDATA ->
+                    writer.writeCharacters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+            default -> { /* commentaires, PI : ignorés */ }
+        }
+        reader.next();
+    }
+
+    private static String prefix(String p) {
+        return p == null ? "" : p;
+    }
+
+    private static String ns(String uri) {
+        return uri == null ? "" : uri;
+    }
+
+    private static XMLOutputFactory outputFactory() {
+        XMLOutputFactory f = XMLOutputFactory.newFactory();
+        f.setProperty(XMLOutputFactory.IS_REPAIRING_NAMESPACES, true);
+        return f;
+    }
+
+    /** Tampon réutilisé : on relit son tableau interne sans copie. */
+    private static final class Buffer extends ByteArrayOutputStream {
+        Buffer() {
+            super(CHUNK * 2);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
@@ -1,44 +1,204 @@
 package com.vonoy.pdf_pipeline.transport;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.oxm.jaxb.Jaxb2Marshaller;
 import org.springframework.stereotype.Component;
+import org.springframework.util.FastByteArrayOutputStream;
 import org.springframework.ws.client.core.WebServiceTemplate;
+import org.springframework.ws.transport.http.HttpUrlConnectionMessageSender;
 import org.springframework.xml.transform.StringSource;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Source;
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
 import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.util.Map;
+import java.util.regex.Pattern;
 
+/**
+ * Transport SOAP.
+ * <ul>
+ *   <li>mode flux (défaut, {@code pdf.soap.streaming} ou {@code config.streaming}) : POST de l'enveloppe sur
+ *       {@link HttpClients}, la réponse est lue en StAX et seul le contenu du Body est passé au parseur,
+ *       au fil de l'eau ({@link SoapBodyStream}) ;</li>
+ *   <li>mode DOM : WebServiceTemplate comme avant, le résultat est sérialisé une fois en octets.</li>
+ * </ul>
+ * {@code config.envelope} : contenu du Body (enveloppé en SOAP 1.1, ou 1.2 si {@code soapVersion: "1.2"})
+ * ou enveloppe complète, envoyée telle quelle. {@code config.soapAction} optionnel.
+ */
 @Component
 public class SoapClient implements TransportClient {
+    private static final String SOAP_11 = "http://schemas.xmlsoap.org/soap/envelope/";
+    private static final String SOAP_12 = "http://www.w3.org/2003/05/soap-envelope";
+    private static final Pattern FULL_ENVELOPE = Pattern.compile("^\\s*(<\\?xml[^>]*>\\s*)?<([\\w.-]+:)?Envelope[\\s>]");
+
+    // Fabriques partagées : créées une fois, configurées au démarrage puis seulement lues.
+    private static final XMLInputFactory STAX = staxFactory();
+    /**
+     * Copie identité compilée une fois : {@link Templates} est thread-safe et {@code newTransformer()} par appel
+     * ne recompile rien (un ThreadLocal ne servirait à rien sur des threads virtuels, jamais réutilisés).
+     */
+    private static final Templates IDENTITY = identity();
+
     private final WebServiceTemplate ws;
-    public SoapClient() {
+    private final HttpClients http;
+    private final boolean streaming;
+    private final SourcePolicy policy;
+
+    public SoapClient(HttpClients http, SourcePolicy policy, @Value("${pdf.soap.streaming:true}") boolean streaming) {
         // Simple WS template; si tu utilises JAXB, configure le marshaller
         this.ws = new WebServiceTemplate(new Jaxb2Marshaller());
+        // Comme HttpClients : pas de redirection hors des hôtes autorisés.
+        this.ws.setMessageSender(new HttpUrlConnectionMessageSender() {
+            @Override
+            protected void prepareConnection(HttpURLConnection connection) throws IOException {
+                super.prepareConnection(connection);
+                connection.setInstanceFollowRedirects(false);
+            }
+        });
+        this.http = http;
+        this.policy = policy;
+        this.streaming = streaming;
     }
 
     @Override public boolean supports(String type){ return "soap".equalsIgnoreCase(type); }
 
     @Override public RawPayload fetch(Map<String,Object> cfg, Map<String,Object> params){
-        String endpoint = (String) cfg.get("endpoint");
+        String endpoint = policy.url((String) cfg.get("endpoint")).toString();
         String envelope = (String) cfg.get("envelope"); // tu peux générer via FreeMarker côté appelant
+        Object mode = cfg.get("streaming");
+        boolean stream = mode != null ? Boolean.parseBoolean(mode.toString()) : streaming;
+        return stream ? stream(endpoint, envelope, cfg) : dom(endpoint, envelope);
+    }
+
+    private RawPayload dom(String endpoint, String envelope) {
         Source request = new StringSource(envelope);
         DOMResult result = new DOMResult();
         ws.sendSourceAndReceiveToResult(endpoint, request, result);
-        String xml = XmlUtil.nodeToString(result.getNode()); // utilitaire ci-dessous
-        return new RawPayload(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)), "application/xml", Map.of());
-    }
-
-    // utilitaire trivial
-    static final class XmlUtil {
-        static String nodeToString(org.w3c.dom.Node node){
-            try {
-                javax.xml.transform.Transformer t = javax.xml.transform.TransformerFactory.newInstance().newTransformer();
-                java.io.StringWriter sw = new java.io.StringWriter();
-                t.transform(new javax.xml.transform.dom.DOMSource(node), new javax.xml.transform.stream.StreamResult(sw));
-                return sw.toString();
-            } catch (Exception e){ throw new RuntimeException(e); }
+        // Sérialisé directement en octets (pas de String intermédiaire), lu ensuite sans copie.
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+        try {
+            IDENTITY.newTransformer().transform(new DOMSource(result.getNode()), new StreamResult(out));
+        } catch (TransformerException e) {
+            throw new RuntimeException(e);
+        }
+        return new RawPayload(out.getInputStream(), "application/xml", Map.of());
+    }
+
+    private RawPayload stream(String endpoint, String envelope, Map<String,Object> cfg) {
+        boolean soap12 = "1.2".equals(String.valueOf(cfg.get("soapVersion"))) || envelope.contains(SOAP_12);
+        String body = FULL_ENVELOPE.matcher(envelope).find() ? envelope : wrap(envelope, soap12);
+        String action = (String) cfg.getOrDefault("soapAction", "");
+
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(endpoint))
+                .timeout(http.readTimeout(cfg))
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (soap12) {
+            request.header("Content-Type", "application/soap+xml; charset=utf-8" + (action.isEmpty() ? "" : "; action=\"" + action + "\""));
+        } else {
+            request.header("Content-Type", "text/xml; charset=utf-8").header("SOAPAction", "\"" + action + "\"");
+        }
+        HttpClients.headers(cfg, request);
+
+        HttpResponse<InputStream> resp = http.send(cfg, request.build());
+        InputStream in = http.body(cfg, resp);
+        int status = resp.statusCode();
+        if (status >= 300 && status < 400) {
+            HttpClients.close(in);
+            throw new RuntimeException("SOAP " + endpoint + " returned " + status + " (redirects are not followed)");
+        }
+        try {
+            XMLStreamReader reader = STAX.createXMLStreamReader(in);
+            if (!toBodyContent(reader)) {
+                HttpClients.close(in);
+                return new RawPayload(new ByteArrayInputStream(new byte[0]), "application/xml", Map.of("status", status));
+            }
+            if ("Fault".equals(reader.getLocalName())) {
+                String fault = faultText(reader);
+                HttpClients.close(in);
+                throw new RuntimeException("SOAP fault from " + endpoint + ": " + fault);
+            }
+            return new RawPayload(new SoapBodyStream(reader, in), "application/xml", Map.of("status", status));
+        } catch (XMLStreamException e) {
+            HttpClients.close(in);
+            String reason = status >= 400 ? "returned " + status : "sent an invalid response: " + e.getMessage();
+            throw new RuntimeException("SOAP " + endpoint + " " + reason, e);
+        }
+    }
+
+    /** Avance jusqu'au premier élément du Body ; false si le Body est vide. */
+    private static boolean toBodyContent(XMLStreamReader r) throws XMLStreamException {
+        while (r.hasNext()) {
+            if (r.next() == XMLStreamConstants.START_ELEMENT && "Body".equals(r.getLocalName())
+                    && (SOAP_11.equals(r.getNamespaceURI()) || SOAP_12.equals(r.getNamespaceURI()))) {
+                while (r.hasNext()) {
+                    int event = r.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) return true;
+                    if (event == XMLStreamConstants.END_ELEMENT) return false;
+                }
+            }
+        }
+        throw new XMLStreamException("No SOAP Body");
+    }
+
+    /** faultstring (1.1) ou Reason/Text (1.2). */
+    private static String faultText(XMLStreamReader r) throws XMLStreamException {
+        StringBuilder text = new StringBuilder();
+        int depth = 1;
+        boolean capture = false;
+        while (depth > 0 && r.hasNext()) {
+            int event = r.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                capture = "faultstring".equals(r.getLocalName()) || "Text".equals(r.getLocalName());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+                capture = false;
+            } else if (capture && r.isCharacters()) {
+                text.append(r.getText());
+            }
+        }
+        return text.length() > 0 ? text.toString().trim() : "(no fault string)";
+    }
+
+    private static String wrap(String payload, boolean soap12) {
+        String ns = soap12 ? SOAP_12 : SOAP_11;
+        String content = payload.replaceFirst("^\\s*<\\?xml[^>]*>", "");
+        return "<soapenv:Envelope xmlns:soapenv=\"" + ns + "\"><soapenv:Body>" + content + "</soapenv:Body></soapenv:Envelope>";
+    }
+
+    private static XMLInputFactory staxFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        f.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return f;
+    }
+
+    private static Templates identity() {
+        String xslt = "<xsl:stylesheet version=\"1.0\" xmlns:xsl=\"http://www.w3.org/1999/XSL/Transform\">"
+                + "<xsl:template match=\"@*|node()\"><xsl:copy><xsl:apply-templates select=\"@*|node()\"/></xsl:copy></xsl:template>"
+                + "</xsl:stylesheet>";
+        try {
+            return TransformerFactory.newInstance().newTemplates(new StreamSource(new StringReader(xslt)));
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException(e);
         }
     }
-}
\ No newline at end of file
+}
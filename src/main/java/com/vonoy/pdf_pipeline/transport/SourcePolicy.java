@@ -0,0 +1,90 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ce qu'une source envoyée par un appelant (/pdf/jobs, /pdf/mail-merge) a le droit d'atteindre :
+ * <ul>
+ *   <li>transport {@code file} : chemins sous {@code pdf.transport.file.base-dir} uniquement
+ *       (liens symboliques résolus) ; vide = transport désactivé ;</li>
+ *   <li>transports {@code rest}/{@code soap} : http(s) vers les hôtes de {@code pdf.transport.allowed-hosts}
+ *       ({@code api.example.com}, {@code *.example.com}, séparés par des virgules) ; vide = aucun hôte.
+ *       Les redirections ne sont pas suivies.</li>
+ * </ul>
+ * Un refus est une IllegalArgumentException (400 / job FAILED), levée avant toute lecture ou connexion.
+ */
+@Component
+class SourcePolicy {
+    private final Path baseDir;
+    private final List<String> allowedHosts;
+
+    SourcePolicy(@Value("${pdf.transport.file.base-dir:}") String baseDir,
+                 @Value("${pdf.transport.allowed-hosts:}") String allowedHosts) {
+        this.baseDir = (baseDir == null || baseDir.isBlank()) ? null : realPath(Path.of(baseDir.trim()));
+        this.allowedHosts = Arrays.stream(allowedHosts == null ? new String[0] : allowedHosts.split(","))
+                .map(h -> h.trim().toLowerCase(Locale.ROOT))
+                .filter(h -> !h.isEmpty())
+                .toList();
+    }
+
+    /** Chemin du transport {@code file}, relatif à la racine autorisée (ou absolu mais dessous). */
+    Path file(String path) {
+        if (baseDir == null) {
+            throw new IllegalArgumentException("File transport is disabled (pdf.transport.file.base-dir is not set)");
+        }
+        if (path == null || path.isBlank()) {
+            throw new IllegalArgumentException("Missing file source path");
+        }
+        Path resolved = realPath(baseDir.resolve(path).normalize());
+        if (!resolved.startsWith(baseDir)) {
+            throw new IllegalArgumentException("File source outside the allowed directory: " + path);
+        }
+        return resolved;
+    }
+
+    /** URL d'un transport HTTP (rest, soap) : http(s) vers un hôte autorisé. */
+    URI url(String url) {
+        if (url == null || url.isBlank()) {
+            throw new IllegalArgumentException("Missing source URL");
+        }
+        URI uri;
+        try {
+            uri = URI.create(url.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid source URL: " + url);
+        }
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        if (!scheme.equals("http") && !scheme.equals("https")) {
+            throw new IllegalArgumentException("Unsupported source URL scheme: " + url);
+        }
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.isEmpty() || allowedHosts.stream().noneMatch(allowed -> matches(allowed, host))) {
+            throw new IllegalArgumentException("Source host not allowed: " + (host.isEmpty() ? url : host));
+        }
+        return uri;
+    }
+
+    private static boolean matches(String allowed, String host) {
+        if (allowed.startsWith("*.")) return host.endsWith(allowed.substring(1));
+        return allowed.equals(host);
+    }
+
+    /** Chemin réel si le fichier existe (liens symboliques suivis), sinon chemin normalisé. */
+    private static Path realPath(Path p) {
+        Path abs = p.toAbsolutePath().normalize();
+        try {
+            return Files.exists(abs) ? abs.toRealPath() : abs;
+        } catch (IOException e) {
+            return abs;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache des réponses amont, devant chaque {@link TransportClient} (voir {@link TransportRegistry}) :
+ * les documents d'un lot qui lisent la même ressource (fiche client, feuille de route) ne la
+ * redemandent pas à la source.
+ * <ul>
+ *   <li>clé : SHA-256 du JSON canonique (clés triées) du type, de la config et des params ;</li>
+ *   <li>REST : durée de vie donnée par {@code Cache-Control} (max-age, no-cache, no-store), sinon
+ *       {@code pdf.transport.cache.ttl.rest} ; une entrée expirée avec ETag est revalidée par
+ *       {@code If-None-Match} (304 = on garde le corps en cache) ;</li>
+ *   <li>SOAP et fichiers : durée de vie configurée ({@code ttl.soap}, {@code ttl.file}) ;</li>
+ *   <li>LRU borné en octets ; une réponse plus grosse que {@code max-entry-size} n'est pas mise en cache
+ *       et reste lue en flux ;</li>
+ *   <li>les lectures identiques simultanées attendent la même réponse.</li>
+ * </ul>
+ * Compteurs : {@code pdf.transport.cache{result=hit|miss|revalidated|coalesced}}.
+ */
+@Component
+public class TransportCache {
+
+    private static final Pattern MAX_AGE = Pattern.compile("(?:^|[,\\s])max-age\\s*=\\s*(\\d+)");
+
+    private final boolean enabled;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final Map<String, Duration> ttls;
+    private final ObjectMapper canonicalMapper;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+    private final Map<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter revalidated;
+    private final Counter coalesced;
+
+    public TransportCache(ObjectMapper objectMapper,
+                          MeterRegistry meters,
+                          @Value("${pdf.transport.cache.enabled:true}") boolean enabled,
+                          @Value("${pdf.transport.cache.max-size:64MB}") DataSize maxSize,
+                          @Value("${pdf.transport.cache.max-entry-size:4MB}") DataSize maxEntrySize,
+                          @Value("${pdf.transport.cache.ttl.rest:0s}") Duration restTtl,
+                          @Value("${pdf.transport.cache.ttl.soap:5m}") Duration soapTtl,
+                          @Value("${pdf.transport.cache.ttl.file:1m}") Duration fileTtl) {
+        this.enabled = enabled;
+        this.maxBytes = maxSize.toBytes();
+        this.maxEntryBytes = (int) Math.min(maxEntrySize.toBytes(), Integer.MAX_VALUE - 8);
+        this.ttls = Map.of("rest", restTtl, "http", restTtl, "soap", soapTtl, "file", fileTtl);
+        this.canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
+        this.hits = requests(meters, "hit");
+        this.misses = requests(meters, "miss");
+        this.revalidated = requests(meters, "revalidated");
+        this.coalesced = requests(meters, "coalesced");
+        Gauge.builder("pdf.transport.cache.size", this, TransportCache::bytes).baseUnit("bytes").register(meters);
+    }
+
+    /** {@code client} derrière le cache, sous le type demandé (le même client sert "rest" et "http"). */
+    public TransportClient wrap(String type, TransportClient client) {
+        if (!enabled) return client;
+        String kind = type == null ? "" : type.toLowerCase(Locale.ROOT);
+        return new TransportClient() {
+            @Override public boolean supports(String t) { return client.supports(t); }
+            @Override public RawPayload fetch(Map<String, Object> config, Map<String, Object> params) {
+                return TransportCache.this.fetch(kind, client, config, params);
+            }
+        };
+    }
+
+    RawPayload fetch(String type, TransportClient client, Map<String, Object> config, Map<String, Object> params) {
+        String key = key(type, config, params);
+        Entry cached = lookup(key);
+        if (cached != null && cached.fresh()) {
+            hits.increment();
+            return cached.payload();
+        }
+
+        CompletableFuture<Entry> mine = new CompletableFuture<>();
+        CompletableFuture<Entry> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            Entry shared = running.exceptionally(t -> null).join();
+            if (shared != null) {
+                coalesced.increment();
+                return shared.payload();
+            }
+            // Réponse non partageable (trop grosse, no-store) ou en échec : lecture directe.
+            return client.fetch(config, params);
+        }
+
+        Entry entry = null;
+        try {
+            Loaded loaded = load(type, client, config, params, cached);
+            if (loaded.entry() != null) {
+                entry = loaded.entry();
+                put(key, entry);
+            }
+            return loaded.payload();
+        } finally {
+            mine.complete(entry);
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Loaded load(String type, TransportClient client, Map<String, Object> config, Map<String, Object> params,
+                        Entry stale) {
+        boolean rest = "rest".equals(type) || "http".equals(type);
+        Map<String, Object> request = config;
+        if (rest && stale != null && stale.etag() != null) {
+            request = new LinkedHashMap<>(config);
+            Map<String, Object> headers = new LinkedHashMap<>();
+            if (config.get("headers") instanceof Map<?, ?> h) h.forEach((k, v) -> headers.put(String.valueOf(k), v));
+            headers.put("If-None-Match", stale.etag());
+            request.put("headers", headers);
+        }
+
+        RawPayload payload = client.fetch(request, params);
+        Duration ttl = ttls.getOrDefault(type, Duration.ZERO);
+        String etag = null;
+        if (rest) {
+            String cacheControl = Objects.toString(payload.meta().get("cacheControl"), "").toLowerCase(Locale.ROOT);
+            if (cacheControl.contains("no-store")) return new Loaded(payload, null);
+            etag = (String) payload.meta().get("etag");
+            ttl = ttl(cacheControl, ttl);
+            if (stale != null && Integer.valueOf(304).equals(payload.meta().get("status"))) {
+                close(payload.stream());
+                revalidated.increment();
+                Entry refreshed = stale.renewed(ttl, etag != null ? etag : stale.etag());
+                return new Loaded(refreshed.payload(), refreshed);
+            }
+        }
+        misses.increment();
+        // Rien à réutiliser : ni durée de vie, ni ETag pour revalider.
+        if (ttl.isZero() && etag == null) return new Loaded(payload, null);
+
+        try {
+            InputStream in = payload.stream();
+            byte[] head = in.readNBytes(maxEntryBytes + 1);
+            if (head.length > maxEntryBytes) {
+                // Trop gros pour le cache : on rend le début déjà lu suivi du reste du flux.
+                return new Loaded(new RawPayload(new SequenceInputStream(new ByteArrayInputStream(head), in),
+                        payload.contentType(), payload.meta()), null);
+            }
+            in.close();
+            Entry entry = new Entry(head, payload.contentType(), payload.meta(), etag,
+                    System.currentTimeMillis() + ttl.toMillis());
+            return new Loaded(entry.payload(), entry);
+        } catch (IOException e) {
+            close(payload.stream());
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Duration ttl(String cacheControl, Duration fallback) {
+        if (cacheControl.contains("no-cache")) return Duration.ZERO;
+        Matcher m = MAX_AGE.matcher(cacheControl);
+        return m.find() ? Duration.ofSeconds(Long.parseLong(m.group(1))) : fallback;
+    }
+
+    private String key(String type, Map<String, Object> config, Map<String, Object> params) {
+        Map<String, Object> canonical = new LinkedHashMap<>();
+        canonical.put("type", type);
+        canonical.put("config", config);
+        canonical.put("params", params);
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(md.digest(canonicalMapper.writeValueAsBytes(canonical)));
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Cannot hash transport request", e);
+        }
+    }
+
+    private Entry lookup(String key) {
+        synchronized (entries) {
+            return entries.get(key);
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            Entry previous = entries.put(key, entry);
+            if (previous != null) bytes -= previous.bytes().length;
+            bytes += entry.bytes().length;
+            Iterator<Entry> it = entries.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().bytes().length;
+                it.remove();
+            }
+        }
+    }
+
+    private long bytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    private static Counter requests(MeterRegistry meters, String result) {
+        return Counter.builder("pdf.transport.cache").tag("result", result).register(meters);
+    }
+
+    private static void close(InputStream in) {
+        try { in.close(); } catch (IOException ignored) { }
+    }
+
+    private record Loaded(RawPayload payload, Entry entry) { }
+
+    private record Entry(byte[] bytes, String contentType, Map<String, Object> meta, String etag, long expiresAt) {
+        boolean fresh() {
+            return System.currentTimeMillis() < expiresAt;
+        }
+
+        Entry renewed(Duration ttl, String newEtag) {
+            return new Entry(bytes, contentType, meta, newEtag, System.currentTimeMillis() + ttl.toMillis());
+        }
+
+        RawPayload payload() {
+            return new RawPayload(new ByteArrayInputStream(bytes), contentType, meta);
+        }
+    }
+}
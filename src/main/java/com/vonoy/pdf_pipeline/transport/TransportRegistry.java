@@ -4,9 +4,12 @@ import java.util.List;
 @Component
 public class TransportRegistry {
     private final List<TransportClient> clients;
-    public TransportRegistry(List<TransportClient> clients){ this.clients = clients; }
+    private final TransportCache cache;
+    public TransportRegistry(List<TransportClient> clients, TransportCache cache){ this.clients = clients; this.cache = cache; }
+    /** Client du type demandé, derrière {@link TransportCache}. */
     public TransportClient get(String type){
-        return clients.stream().filter(c -> c.supports(type))
+        TransportClient client = clients.stream().filter(c -> c.supports(type))
                 .findFirst().orElseThrow(() -> new IllegalArgumentException("No transport for type: " + type));
+        return cache.wrap(type, client);
     }
 }
\ No newline at end of file
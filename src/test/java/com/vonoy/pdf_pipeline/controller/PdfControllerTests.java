@@ -0,0 +1,123 @@
+package com.vonoy.pdf_pipeline.controller;
+
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+		"pdf.render.max-concurrency=1",
+		"pdf.render.queue-timeout=200ms",
+		"pdf.warmup.enabled=false",
+		"pdf.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+class PdfControllerTests {
+
+	private static final String JOB = "{\"apiKey\":\"invoice:v1\",\"data\":{}}";
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Autowired
+	private RenderExecutor renderExecutor;
+
+	@Test
+	void streamingRenderAnswers503WhenNoWorkerFreesUp() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> busy = renderExecutor.tryAdmit(Duration.ofSeconds(1)).orElseThrow()
+				.submit(() -> {
+					release.await();
+					return null;
+				});
+		try {
+			mvc.perform(post("/pdf").contentType(MediaType.APPLICATION_JSON).content(JOB))
+					.andExpect(status().isServiceUnavailable())
+					.andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+		} finally {
+			release.countDown();
+			busy.join();
+		}
+	}
+
+	@Test
+	void streamingRenderWritesPdfOnReservedWorker() throws Exception {
+		MvcResult started = mvc.perform(post("/pdf").contentType(MediaType.APPLICATION_JSON).content(JOB))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult result = mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn();
+		assertThat(result.getResponse().getContentAsByteArray()).startsWith("%PDF".getBytes());
+	}
+
+	@Test
+	void batchAnswers503BeforeCommittingWhenNoWorkerFreesUp() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> busy = renderExecutor.tryAdmit(Duration.ofSeconds(1)).orElseThrow()
+				.submit(() -> {
+					release.await();
+					return null;
+				});
+		try {
+			mvc.perform(post("/pdf/batch").contentType(MediaType.APPLICATION_JSON).content("[" + JOB + "," + JOB + "]"))
+					.andExpect(status().isServiceUnavailable())
+					.andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+		} finally {
+			release.countDown();
+			busy.join();
+		}
+	}
+
+	@Test
+	void batchRejectsInvalidItemsAndLotsAboveSyncLimit() throws Exception {
+		mvc.perform(post("/pdf/batch").contentType(MediaType.APPLICATION_JSON).content("[" + JOB + ",{\"data\":{}}]"))
+				.andExpect(status().isBadRequest());
+		String tooMany = "[" + String.join(",", Collections.nCopies(201, JOB)) + "]";
+		MvcResult started = mvc.perform(post("/pdf/batch").contentType(MediaType.APPLICATION_JSON).content(tooMany))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult result = mvc.perform(asyncDispatch(started))
+				.andExpect(status().isBadRequest())
+				.andReturn();
+		assertThat(result.getResponse().getContentAsString()).contains("201 > 200", "/pdf/mail-merge");
+	}
+
+	@Test
+	void batchStreamsZipWithManifest() throws Exception {
+		MvcResult started = mvc.perform(post("/pdf/batch").contentType(MediaType.APPLICATION_JSON)
+						.content("[" + JOB + "," + JOB + "]"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		MvcResult result = mvc.perform(asyncDispatch(started))
+				.andExpect(status().isOk())
+				.andReturn();
+		List<String> entries = new ArrayList<>();
+		try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+			for (ZipEntry e; (e = zip.getNextEntry()) != null; ) entries.add(e.getName());
+		}
+		assertThat(entries).containsExactlyInAnyOrder("document-1.pdf", "document-2.pdf", "manifest.json");
+	}
+}
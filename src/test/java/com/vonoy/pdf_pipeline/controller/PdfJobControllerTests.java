@@ -0,0 +1,41 @@
+package com.vonoy.pdf_pipeline.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+		"pdf.render.max-concurrency=1",
+		"pdf.render.queue-timeout=200ms",
+		"pdf.warmup.enabled=false",
+		"pdf.cache.enabled=false"
+})
+@AutoConfigureMockMvc
+class PdfJobControllerTests {
+
+	private static final String SOURCE = "\"source\":{\"type\":\"rest\",\"config\":{\"url\":\"https://erp.example.com/orders/1\"}}";
+
+	@Autowired
+	private MockMvc mvc;
+
+	@Test
+	void rejectsCallerHtmlAndTemplateId() throws Exception {
+		mvc.perform(post("/pdf/jobs").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"apiKey\":\"invoice:v1\"," + SOURCE
+								+ ",\"params\":{\"html\":\"<img src='file:///etc/passwd'/>\"}}"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("params.html")));
+		mvc.perform(post("/pdf/jobs").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"apiKey\":\"invoice:v1\"," + SOURCE + ",\"params\":{\"templateId\":\"../secret\"}}"))
+				.andExpect(status().isBadRequest())
+				.andExpect(content().string(containsString("params.templateId")));
+	}
+}
@@ -0,0 +1,153 @@
+package com.vonoy.pdf_pipeline.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfResultCacheTests {
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+	@Test
+	void coalescesConcurrentIdenticalRenders() throws Exception {
+		PdfResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1), null, DataSize.ofMegabytes(1));
+		AtomicInteger renders = new AtomicInteger();
+		CountDownLatch rendering = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<byte[]> first = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+			renders.incrementAndGet();
+			rendering.countDown();
+			release.await();
+			return bytes(10, 'a');
+		}));
+		rendering.await();
+		CompletableFuture<byte[]> second = CompletableFuture.supplyAsync(() -> cache.get("k", () -> {
+			renders.incrementAndGet();
+			return bytes(10, 'b');
+		}));
+		while (count("coalesced") < 1) Thread.sleep(5);
+		release.countDown();
+
+		assertThat(first.get()).isEqualTo(bytes(10, 'a'));
+		assertThat(second.get()).isEqualTo(bytes(10, 'a'));
+		assertThat(renders).hasValue(1);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedBeyondMemoryBound() {
+		PdfResultCache cache = cache(DataSize.ofBytes(2500), Duration.ofMinutes(1), null, DataSize.ofMegabytes(1));
+		AtomicInteger renders = new AtomicInteger();
+		cache.get("a", () -> render(renders, 'a'));
+		cache.get("b", () -> render(renders, 'b'));
+		cache.get("a", () -> render(renders, 'a'));   // a devient le plus récent
+		cache.get("c", () -> render(renders, 'c'));   // 3000 octets > 2500 : b sort
+		assertThat(renders).hasValue(3);
+
+		cache.get("a", () -> render(renders, 'a'));
+		assertThat(renders).hasValue(3);
+		cache.get("b", () -> render(renders, 'b'));
+		assertThat(renders).hasValue(4);
+	}
+
+	@Test
+	void expiresEntriesAfterTtl() throws Exception {
+		PdfResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMillis(50), null, DataSize.ofMegabytes(1));
+		AtomicInteger renders = new AtomicInteger();
+		cache.get("k", () -> render(renders, 'k'));
+		cache.get("k", () -> render(renders, 'k'));
+		assertThat(renders).hasValue(1);
+
+		Thread.sleep(120);
+		cache.get("k", () -> render(renders, 'k'));
+		assertThat(renders).hasValue(2);
+	}
+
+	@Test
+	void evictsOldestFilesBeyondDiskBound(@TempDir Path dir) {
+		// Mémoire trop petite pour une entrée : tout passe par le disque.
+		PdfResultCache cache = cache(DataSize.ofBytes(10), Duration.ofMinutes(1), dir, DataSize.ofBytes(2500));
+		AtomicInteger renders = new AtomicInteger();
+		cache.get("a", () -> render(renders, 'a'));
+		cache.get("b", () -> render(renders, 'b'));
+		cache.get("c", () -> render(renders, 'c'));
+
+		assertThat(Files.exists(dir.resolve("a.pdf"))).isFalse();
+		assertThat(Files.exists(dir.resolve("b.pdf"))).isTrue();
+		assertThat(Files.exists(dir.resolve("c.pdf"))).isTrue();
+		cache.get("c", () -> render(renders, 'c'));
+		assertThat(renders).hasValue(3);
+		assertThat(meters.get("pdf.cache.evictions").tag("tier", "disk").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void teeStreamsAndPublishesRender() throws Exception {
+		PdfResultCache cache = cache(DataSize.ofMegabytes(1), Duration.ofMinutes(1), null, DataSize.ofMegabytes(1));
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		try (PdfResultCache.Fill fill = cache.open("k")) {
+			assertThat(fill.cached()).isNull();
+			OutputStream out = fill.tee(response);
+			out.write(bytes(100, 'p'));
+			fill.complete();
+		}
+		assertThat(response.toByteArray()).isEqualTo(bytes(100, 'p'));
+		try (PdfResultCache.Fill fill = cache.open("k")) {
+			assertThat(fill.cached()).isEqualTo(bytes(100, 'p'));
+		}
+	}
+
+	@Test
+	void teeDropsCopyBeyondDiskEntryLimit(@TempDir Path dir) throws Exception {
+		// Disque de 1 Mo, mais entrées limitées à 500 octets : la copie en heap s'arrête là.
+		PdfResultCache cache = cache(DataSize.ofBytes(10), Duration.ofMinutes(1), dir, DataSize.ofMegabytes(1),
+				DataSize.ofBytes(500));
+		ByteArrayOutputStream response = new ByteArrayOutputStream();
+		try (PdfResultCache.Fill fill = cache.open("big")) {
+			OutputStream out = fill.tee(response);
+			for (int i = 0; i < 6; i++) out.write(bytes(100, 'b'));
+			fill.complete();
+		}
+		assertThat(response.size()).isEqualTo(600);
+		assertThat(Files.exists(dir.resolve("big.pdf"))).isFalse();
+		try (PdfResultCache.Fill fill = cache.open("big")) {
+			assertThat(fill.cached()).isNull();
+		}
+	}
+
+	private PdfResultCache cache(DataSize memory, Duration ttl, Path diskDir, DataSize diskMax) {
+		return cache(memory, ttl, diskDir, diskMax, DataSize.ofMegabytes(32));
+	}
+
+	private PdfResultCache cache(DataSize memory, Duration ttl, Path diskDir, DataSize diskMax, DataSize diskMaxEntry) {
+		return new PdfResultCache(new ObjectMapper(), meters, true, "1", memory, DataSize.ofMegabytes(1), ttl,
+				diskDir != null ? diskDir.toString() : "", diskMax, diskMaxEntry);
+	}
+
+	private double count(String result) {
+		return meters.get("pdf.cache.requests").tag("result", result).counter().count();
+	}
+
+	private static byte[] render(AtomicInteger renders, char c) {
+		renders.incrementAndGet();
+		return bytes(1000, c);
+	}
+
+	private static byte[] bytes(int n, char c) {
+		byte[] b = new byte[n];
+		java.util.Arrays.fill(b, (byte) c);
+		return b;
+	}
+}
@@ -0,0 +1,85 @@
+package com.vonoy.pdf_pipeline.core;
+
+import com.vonoy.pdf_pipeline.core.RenderRejectedException.Reason;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RenderExecutorTests {
+
+	// 1 worker, 1 place en file : capacité 2.
+	private final RenderExecutor executor = new RenderExecutor(1, 1, Duration.ofMillis(200), Duration.ofSeconds(3));
+
+	@AfterEach
+	void shutdown() {
+		executor.destroy();
+	}
+
+	@Test
+	void rejectsBeyondCapacityWithQueueFull() {
+		try (RenderExecutor.Admission a = executor.tryAdmit(); RenderExecutor.Admission b = executor.tryAdmit()) {
+			assertThatThrownBy(executor::tryAdmit)
+					.isInstanceOfSatisfying(RenderRejectedException.class, e -> {
+						assertThat(e.getReason()).isEqualTo(Reason.QUEUE_FULL);
+						assertThat(e.getRetryAfterSeconds()).isEqualTo(3);
+					});
+		}
+		// Places rendues par close() : de nouveau admissible.
+		executor.tryAdmit().close();
+	}
+
+	@Test
+	void timesOutWhenNoWorkerFreesUp() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Object> busy = executor.tryAdmit().submit(() -> {
+			release.await();
+			return null;
+		});
+		try {
+			RenderExecutor.Admission waiting = executor.tryAdmit();
+			long start = System.nanoTime();
+			assertThatThrownBy(waiting::awaitWorker)
+					.isInstanceOfSatisfying(RenderRejectedException.class,
+							e -> assertThat(e.getReason()).isEqualTo(Reason.QUEUE_TIMEOUT));
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isGreaterThanOrEqualTo(Duration.ofMillis(200));
+			// L'admission abandonnée a rendu sa place : la file en accepte une autre.
+			executor.tryAdmit().close();
+		} finally {
+			release.countDown();
+			busy.join();
+		}
+	}
+
+	@Test
+	void reservedWorkerIsHeldUntilUsed() throws Exception {
+		RenderExecutor.Admission.Worker worker = executor.tryAdmit().awaitWorker();
+
+		// Worker réservé sans tâche : une autre demande attend derrière lui.
+		CompletableFuture<String> queued = executor.tryAdmit().submit(() -> "queued");
+		Thread.sleep(100);
+		assertThat(queued).isNotDone();
+
+		assertThat(worker.run(() -> Thread.currentThread().getName())).startsWith("pdf-render-");
+		assertThatThrownBy(() -> worker.run(() -> null)).isInstanceOf(IllegalStateException.class);
+		// Tâche terminée : le worker passe à la demande suivante.
+		assertThat(queued.get(1, TimeUnit.SECONDS)).isEqualTo("queued");
+	}
+
+	@Test
+	void unusedReservationIsReleasedAfterQueueTimeout() throws Exception {
+		RenderExecutor.Admission.Worker abandoned = executor.tryAdmit().awaitWorker();
+		Thread.sleep(400);
+
+		assertThatThrownBy(() -> abandoned.run(() -> "late"))
+				.isInstanceOfSatisfying(RenderRejectedException.class,
+						e -> assertThat(e.getReason()).isEqualTo(Reason.QUEUE_TIMEOUT));
+		assertThat(executor.tryAdmit().awaitWorker().run(() -> "next")).isEqualTo("next");
+	}
+}
@@ -0,0 +1,95 @@
+package com.vonoy.pdf_pipeline.core;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vonoy.pdf_pipeline.api.dto.SourceConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SourceGraphTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+	private final IoExecutor io = new IoExecutor(false, 8);
+
+	@AfterEach
+	void shutdown() {
+		io.destroy();
+	}
+
+	@Test
+	void rejectsCycleAndUnknownDependency() {
+		List<SourceConfig> cycle = List.of(source("a", "b"), source("b", "a"), source("c"));
+		assertThatThrownBy(() -> SourceGraph.fetch(cycle, Map.of(), io, (s, p) -> mapper.createObjectNode()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Circular")
+				.hasMessageContaining("a")
+				.hasMessageContaining("b");
+
+		List<SourceConfig> unknown = List.of(source("a", "missing"));
+		assertThatThrownBy(() -> SourceGraph.fetch(unknown, Map.of(), io, (s, p) -> mapper.createObjectNode()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("unknown source 'missing'");
+	}
+
+	@Test
+	void substitutesUpstreamValuesInConfig() throws Exception {
+		SourceConfig customer = source("customer");
+		SourceConfig orders = new SourceConfig("orders", "rest",
+				Map.of("url", "https://erp/orders?customer=${customer.id}&sku=${customer.lines.1.sku}"), List.of("customer"));
+		Map<String, Object> seenConfig = new ConcurrentHashMap<>();
+		Map<String, Object> seenParams = new ConcurrentHashMap<>();
+
+		ObjectNode merged = SourceGraph.fetch(List.of(orders, customer), Map.of("lang", "fr"), io, (s, params) -> {
+			if (s.getId().equals("customer")) {
+				return json("{\"id\":42,\"lines\":[{\"sku\":\"A\"},{\"sku\":\"B\"}]}");
+			}
+			seenConfig.putAll(s.getConfig());
+			seenParams.putAll(params);
+			return json("[1,2]");
+		});
+
+		assertThat(seenConfig.get("url")).isEqualTo("https://erp/orders?customer=42&sku=B");
+		assertThat(seenParams).containsEntry("lang", "fr").containsKey("customer");
+		assertThat(merged.path("customer").path("id").asInt()).isEqualTo(42);
+		assertThat(merged.path("orders").size()).isEqualTo(2);
+	}
+
+	@Test
+	void startsIndependentSourcesInParallel() {
+		// Chaque source attend que les deux aient démarré : en séquentiel, le latch n'atteindrait jamais 0.
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		ObjectNode merged = SourceGraph.fetch(List.of(source("a"), source("b")), Map.of(), io, (s, p) -> {
+			bothStarted.countDown();
+			try {
+				assertThat(bothStarted.await(5, TimeUnit.SECONDS)).isTrue();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return mapper.createObjectNode().put("id", s.getId());
+		});
+		assertThat(merged.path("a").path("id").asText()).isEqualTo("a");
+		assertThat(merged.path("b").path("id").asText()).isEqualTo("b");
+	}
+
+	private static SourceConfig source(String id, String... dependsOn) {
+		return new SourceConfig(id, "rest", Map.of("url", "https://erp/" + id), List.of(dependsOn));
+	}
+
+	private JsonNode json(String s) {
+		try {
+			return mapper.readTree(s);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
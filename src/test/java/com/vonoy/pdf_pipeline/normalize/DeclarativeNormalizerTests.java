@@ -0,0 +1,60 @@
+package com.vonoy.pdf_pipeline.normalize;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeclarativeNormalizerTests {
+
+	private final ObjectMapper mapper = new ObjectMapper();
+
+	@Test
+	void readsRulesOnJacksonTree() throws Exception {
+		DeclarativeNormalizer normalizer = normalizer(Map.of(
+				"customer_name", List.of("$.customer.name", "$.client.nom"),
+				"total", List.of("$.summary.total"),
+				"lines", List.of("$.lignes[*]")));
+		JsonNode root = mapper.readTree("{\"client\":{\"nom\":\"Dupont\"},\"summary\":{\"total\":12.5},"
+				+ "\"lignes\":[{\"sku\":\"A1\",\"qty\":2}]}");
+
+		Map<String, Object> fields = normalizer.normalize(root, Map.of("apiKey", "invoice:v1")).fields();
+
+		assertThat(normalizer.supports("invoice:v1")).isTrue();
+		assertThat(fields.get("customer_name")).isEqualTo("Dupont");
+		assertThat(fields.get("total")).isEqualTo(12.5);
+		assertThat(fields.get("lines")).isEqualTo(List.of(Map.of("sku", "A1", "qty", 2)));
+		assertThat(fields.get("apiKey")).isEqualTo("invoice:v1");
+	}
+
+	@Test
+	void explicitNullFallsThroughToNextExpression() throws Exception {
+		DeclarativeNormalizer normalizer = normalizer(Map.of(
+				"customer_name", List.of("$.customer.name", "$.client.nom"),
+				"phone", List.of("$.customer.phone")));
+		JsonNode root = mapper.readTree("{\"customer\":{\"name\":null,\"phone\":null},\"client\":{\"nom\":\"X\"}}");
+
+		Map<String, Object> fields = normalizer.normalize(root, Map.of("apiKey", "invoice:v1")).fields();
+
+		assertThat(fields.get("customer_name")).isEqualTo("X");
+		assertThat(fields).containsEntry("phone", null);
+	}
+
+	@Test
+	void rejectsInvalidExpressionAtStartup() {
+		assertThatThrownBy(() -> normalizer(Map.of("bad", List.of("$.items[?("))))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("invoice:v1.bad");
+	}
+
+	private DeclarativeNormalizer normalizer(Map<String, List<String>> rules) {
+		NormalizationProperties properties = new NormalizationProperties();
+		properties.setRules(Map.of("invoice:v1", rules));
+		return new DeclarativeNormalizer(properties, mapper);
+	}
+}
@@ -0,0 +1,39 @@
+package com.vonoy.pdf_pipeline.parse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.vonoy.pdf_pipeline.transport.RawPayload;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DefaultAnyDataParserTests {
+
+	private final DefaultAnyDataParser parser = new DefaultAnyDataParser();
+
+	@Test
+	void sniffsFormatWhenContentTypeIsGeneric() {
+		assertThat(parse("\uFEFF  {\"id\": 7}", "application/octet-stream").path("id").asInt()).isEqualTo(7);
+		assertThat(parse("<?xml version=\"1.0\"?><order><id>7</id></order>", null).path("id").asText()).isEqualTo("7");
+
+		JsonNode csv = parse("code;label\nA1;\"Eau, 1L\"\nB2;Lait\n", "text/plain");
+		assertThat(csv.size()).isEqualTo(2);
+		assertThat(csv.get(0).path("label").asText()).isEqualTo("Eau, 1L");
+
+		assertThat(parse("Bonjour, le monde", "text/plain").path("raw").asText()).isEqualTo("Bonjour, le monde");
+	}
+
+	@Test
+	void detectsSeparatorOfDeclaredCsv() {
+		JsonNode csv = parse("sku\tqty\nS1\t3\n", "text/csv");
+		assertThat(csv.get(0).path("qty").asText()).isEqualTo("3");
+	}
+
+	private JsonNode parse(String body, String contentType) {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		return parser.parse(new RawPayload(new ByteArrayInputStream(bytes), contentType, Map.of()));
+	}
+}
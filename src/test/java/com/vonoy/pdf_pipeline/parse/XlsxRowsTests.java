@@ -0,0 +1,95 @@
+package com.vonoy.pdf_pipeline.parse;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class XlsxRowsTests {
+
+	@Test
+	void readsTypedCellsFromFirstSheet() throws Exception {
+		ArrayNode rows = XlsxRows.read(workbook(false), null);
+
+		assertThat(rows).hasSize(2);
+		JsonNode first = rows.get(0);
+		assertThat(first.path("code").isTextual()).isTrue();
+		assertThat(first.path("code").asText()).isEqualTo("A1");
+		assertThat(first.path("qty").isIntegralNumber()).isTrue();
+		assertThat(first.path("qty").asLong()).isEqualTo(12);
+		assertThat(first.path("price").asDouble()).isEqualTo(3.75);
+		assertThat(first.path("paid").isBoolean()).isTrue();
+		assertThat(first.path("paid").asBoolean()).isTrue();
+		assertThat(first.path("date").asText()).isEqualTo("2025-01-02");
+		assertThat(first.path("at").asText()).isEqualTo("2025-01-02T08:30");
+		assertThat(rows.get(1).path("code").asText()).isEqualTo("A1");   // chaîne partagée réutilisée
+		assertThat(rows.get(1).path("paid").asBoolean()).isFalse();
+	}
+
+	@Test
+	void readsDatesOf1904Workbook() throws Exception {
+		JsonNode first = XlsxRows.read(workbook(true), null).get(0);
+
+		assertThat(first.path("date").asText()).isEqualTo("2025-01-02");
+		assertThat(first.path("at").asText()).isEqualTo("2025-01-02T08:30");
+	}
+
+	@Test
+	void selectsSheetByName() throws Exception {
+		ArrayNode rows = XlsxRows.read(workbook(false), "Routes");
+
+		assertThat(rows).hasSize(1);
+		assertThat(rows.get(0).path("route").asText()).isEqualTo("R-12");
+		assertThatThrownBy(() -> XlsxRows.read(workbook(false), "Missing"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("Unknown sheet 'Missing'")
+				.hasMessageContaining("Routes");
+	}
+
+	private static ByteArrayInputStream workbook(boolean date1904) throws IOException {
+		try (XSSFWorkbook wb = new XSSFWorkbook()) {
+			(wb.getCTWorkbook().isSetWorkbookPr() ? wb.getCTWorkbook().getWorkbookPr() : wb.getCTWorkbook().addNewWorkbookPr())
+					.setDate1904(date1904);
+			CellStyle day = wb.createCellStyle();
+			day.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+			CellStyle time = wb.createCellStyle();
+			time.setDataFormat(wb.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd hh:mm"));
+
+			Sheet lines = wb.createSheet("Lines");
+			Row header = lines.createRow(0);
+			String[] names = {"code", "qty", "price", "paid", "date", "at"};
+			for (int i = 0; i < names.length; i++) header.createCell(i).setCellValue(names[i]);
+			for (int r = 1; r <= 2; r++) {
+				Row row = lines.createRow(r);
+				row.createCell(0).setCellValue("A1");
+				row.createCell(1).setCellValue(12);
+				row.createCell(2).setCellValue(3.75);
+				row.createCell(3).setCellValue(r == 1);
+				row.createCell(4).setCellValue(LocalDate.of(2025, 1, 2));
+				row.getCell(4).setCellStyle(day);
+				row.createCell(5).setCellValue(LocalDateTime.of(2025, 1, 2, 8, 30));
+				row.getCell(5).setCellStyle(time);
+			}
+
+			Sheet routes = wb.createSheet("Routes");
+			routes.createRow(0).createCell(0).setCellValue("route");
+			routes.createRow(1).createCell(0).setCellValue("R-12");
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			wb.write(out);
+			return new ByteArrayInputStream(out.toByteArray());
+		}
+	}
+}
@@ -0,0 +1,66 @@
+package com.vonoy.pdf_pipeline.render;
+
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PodImageProcessorTests {
+
+	private final RenderExecutor renderExecutor = new RenderExecutor(2, 0, Duration.ofSeconds(5), Duration.ofSeconds(1));
+	private final PodImageProcessor processor =
+			new PodImageProcessor(new SimpleMeterRegistry(), renderExecutor, true, 3, 150, 180, 180, 0.8f);
+
+	@AfterEach
+	void shutdown() {
+		renderExecutor.destroy();
+	}
+
+	@Test
+	void decodesEveryImageAndReleasesHelperAdmissions() throws Exception {
+		byte[] photo = photo();
+
+		List<PodImageProcessor.PodImage> images = processor.process(Collections.nCopies(5, photo));
+
+		assertThat(images).hasSize(5).allSatisfy(img -> {
+			assertThat(img.mimeType()).isEqualTo("image/jpeg");
+			assertThat(img.bytes().length).isLessThan(photo.length);
+		});
+		// Une aide rend sa place en sortant de la file, même si le worker a tout traité avant elle.
+		try (RenderExecutor.Admission a = renderExecutor.tryAdmit(Duration.ofSeconds(2)).orElseThrow();
+			 RenderExecutor.Admission b = renderExecutor.tryAdmit(Duration.ofSeconds(2)).orElseThrow()) {
+			assertThat(List.of(a, b)).hasSize(2);
+		}
+	}
+
+	@Test
+	void callerDecodesAloneWhenPoolIsSaturated() throws IOException {
+		byte[] photo = photo();
+		try (RenderExecutor.Admission a = renderExecutor.tryAdmit(); RenderExecutor.Admission b = renderExecutor.tryAdmit()) {
+			List<PodImageProcessor.PodImage> images = processor.process(List.of(photo, "not base64 !", photo));
+
+			assertThat(images).hasSize(2).allSatisfy(img -> assertThat(img.mimeType()).isEqualTo("image/jpeg"));
+		}
+	}
+
+	/** Photo 12 Mpx (au-delà de la zone à 150 dpi) : elle est réduite et ré-encodée. */
+	private static byte[] photo() throws IOException {
+		BufferedImage img = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+		for (int y = 0; y < img.getHeight(); y++) {
+			for (int x = 0; x < img.getWidth(); x++) img.setRGB(x, y, (x * 31) ^ (y * 17));
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ImageIO.write(img, "jpeg", out);
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,23 @@
+package com.vonoy.pdf_pipeline.render;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StaticUriResolverTests {
+
+	private static final String BASE = "file:/app/classes/static/";
+
+	private final StaticUriResolver resolver = new StaticUriResolver(BASE);
+
+	@Test
+	void loadsOnlyStaticResourcesAndDataUris() {
+		assertThat(resolver.resolveURI(BASE, "images/logo.png")).isEqualTo(BASE + "images/logo.png");
+		assertThat(resolver.resolveURI(BASE, "data:image/png;base64,iVBOR")).startsWith("data:");
+
+		assertThat(resolver.resolveURI(BASE, "file:///etc/passwd")).isNull();
+		assertThat(resolver.resolveURI(BASE, "../../../etc/passwd")).isNull();
+		assertThat(resolver.resolveURI(BASE, "http://169.254.169.254/latest/meta-data")).isNull();
+		assertThat(resolver.resolveURI(BASE, "https://internal-host/style.css")).isNull();
+	}
+}
@@ -0,0 +1,134 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vonoy.pdf_pipeline.api.dto.MailMergeRequest;
+import com.vonoy.pdf_pipeline.api.dto.MailMergeStatus;
+import com.vonoy.pdf_pipeline.api.dto.PdfJobStatus.State;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(properties = {
+		"pdf.render.max-concurrency=1",
+		"pdf.render.queue-timeout=200ms",
+		"pdf.warmup.enabled=false",
+		"pdf.cache.enabled=false",
+		"pdf.mail-merge.max-rows=3"
+})
+class PdfMailMergeServiceTests {
+
+	private static final String CSV = "deliveryId;customer\nD1;Client 1\nD2;Client 2\nD3;Client 3\n";
+
+	@DynamicPropertySource
+	static void outputDir(DynamicPropertyRegistry registry) throws IOException {
+		Path dir = Files.createTempDirectory("pdf-mail-merge-tests");
+		registry.add("pdf.output.dir", dir::toString);
+	}
+
+	@Autowired
+	private PdfMailMergeService service;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Test
+	void rendersOnePdfPerRowNamedAfterColumns() throws Exception {
+		MailMergeStatus status = await(service.submit(request("BL-{deliveryId}.pdf"), csv(CSV), "text/csv"));
+
+		assertThat(status.status()).isEqualTo(State.DONE);
+		assertThat(status.rows()).isEqualTo(3);
+		assertThat(status.succeeded()).isEqualTo(3);
+		assertThat(status.failed()).isZero();
+
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(service.file(status.id()).orElseThrow()))) {
+			for (ZipEntry e; (e = zip.getNextEntry()) != null; ) entries.put(e.getName(), zip.readAllBytes());
+		}
+		assertThat(entries).containsOnlyKeys("BL-D1.pdf", "BL-D2.pdf", "BL-D3.pdf", "manifest.json");
+		assertThat(entries.get("BL-D2.pdf")).startsWith("%PDF".getBytes(StandardCharsets.US_ASCII));
+
+		JsonNode manifest = objectMapper.readTree(entries.get("manifest.json"));
+		assertThat(manifest).hasSize(3);
+		for (int i = 0; i < 3; i++) {
+			JsonNode entry = manifest.get(i);
+			assertThat(entry.path("index").asInt()).isEqualTo(i);
+			assertThat(entry.path("apiKey").asText()).isEqualTo("invoice:v1");
+			assertThat(entry.path("status").asText()).isEqualTo("OK");
+			assertThat(entry.path("fileName").asText()).isEqualTo("BL-D" + (i + 1) + ".pdf");
+			assertThat(entry.path("sizeBytes").asLong()).isEqualTo(entries.get("BL-D" + (i + 1) + ".pdf").length);
+		}
+	}
+
+	@Test
+	void failsBeyondMaxRows() throws Exception {
+		MailMergeStatus status = await(service.submit(request(null), csv(CSV + "D4;Client 4\n"), "text/csv"));
+
+		assertThat(status.status()).isEqualTo(State.FAILED);
+		assertThat(status.error()).contains("Too many rows: more than 3");
+		assertThat(service.file(status.id())).isEmpty();
+	}
+
+	@Test
+	void deletesTemporaryCopyWhenUploadFails() throws Exception {
+		long before = uploads();
+		InputStreamSource broken = () -> new InputStream() {
+			@Override
+			public int read() throws IOException {
+				throw new IOException("connection reset");
+			}
+		};
+
+		assertThatThrownBy(() -> service.submit(request(null), broken, "text/csv"))
+				.isInstanceOf(IOException.class)
+				.hasMessage("connection reset");
+		assertThat(uploads()).isEqualTo(before);
+	}
+
+	private MailMergeStatus await(MailMergeStatus submitted) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 60_000;
+		MailMergeStatus status = submitted;
+		while (status.status() == State.QUEUED || status.status() == State.RUNNING) {
+			assertThat(System.currentTimeMillis()).as("mail-merge still running").isLessThan(deadline);
+			Thread.sleep(50);
+			status = service.status(submitted.id()).orElseThrow();
+		}
+		return status;
+	}
+
+	private static MailMergeRequest request(String fileName) {
+		return new MailMergeRequest("invoice:v1", null, false, null, fileName, null);
+	}
+
+	private static InputStreamSource csv(String content) {
+		return new ByteArrayResource(content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Copies temporaires d'envoi ({@code pdf-merge-*.data}) présentes dans java.io.tmpdir. */
+	private static long uploads() throws IOException {
+		long count = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(Path.of(System.getProperty("java.io.tmpdir")),
+				"pdf-merge-*.data")) {
+			for (Path ignored : files) count++;
+		}
+		return count;
+	}
+}
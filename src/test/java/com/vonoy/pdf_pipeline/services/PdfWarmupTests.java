@@ -0,0 +1,56 @@
+package com.vonoy.pdf_pipeline.services;
+
+import com.vonoy.pdf_pipeline.core.RenderExecutor;
+import com.vonoy.pdf_pipeline.core.RenderMetrics;
+import com.vonoy.pdf_pipeline.render.FontProperties;
+import com.vonoy.pdf_pipeline.render.FontRegistry;
+import com.vonoy.pdf_pipeline.render.PodImageProcessor;
+import com.vonoy.pdf_pipeline.template.ArabicShaper;
+import com.vonoy.pdf_pipeline.template.LabelBundles;
+import com.vonoy.pdf_pipeline.template.StaticAssetCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templatemode.TemplateMode;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PdfWarmupTests {
+
+	@Test
+	void warmupStaysOutOfRenderMetricsAndShapingCache() {
+		SimpleMeterRegistry meters = new SimpleMeterRegistry();
+		DefaultResourceLoader loader = new DefaultResourceLoader();
+		ArabicShaper shaper = new ArabicShaper(meters, 10000, 512);
+		StaticAssetCache assets = new StaticAssetCache(loader, false, List.of("images/logo.png"));
+		PdfService service = new PdfService(templateEngine(), new FontRegistry(new FontProperties(), loader), assets,
+				new LabelBundles(shaper), shaper, new PodImageProcessor(meters, new RenderExecutor(1, 0, Duration.ofSeconds(1), Duration.ofSeconds(1)), true, 2, 150, 180, 180, 0.8f),
+				new RenderMetrics(meters));
+
+		new PdfWarmup(service, assets, meters, true, 1).run(new DefaultApplicationArguments());
+
+		assertThat(meters.find("pdf.warmup.renders").gauge().value()).isEqualTo(8);
+		assertThat(meters.find("pdf.warmup.failures").gauge().value()).isZero();
+		assertThat(meters.find("pdf.render").timers()).isEmpty();
+		assertThat(meters.find("pdf.render.stage").timers()).isEmpty();
+		assertThat(meters.get("pdf.shaping.cache").tag("result", "miss").counter().count()).isZero();
+		assertThat(meters.get("pdf.shaping.cache").tag("result", "hit").counter().count()).isZero();
+	}
+
+	private static SpringTemplateEngine templateEngine() {
+		ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+		resolver.setPrefix("templates/");
+		resolver.setSuffix(".html");
+		resolver.setTemplateMode(TemplateMode.HTML);
+		resolver.setCharacterEncoding("UTF-8");
+		SpringTemplateEngine engine = new SpringTemplateEngine();
+		engine.setTemplateResolver(resolver);
+		return engine;
+	}
+}
@@ -0,0 +1,99 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class HttpRestClientTests {
+
+	private final CountDownLatch stop = new CountDownLatch(1);
+	private HttpServer server;
+	private HttpClients http;
+	private HttpRestClient client;
+
+	@BeforeEach
+	void start() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/ok", exchange -> {
+			byte[] body = "{\"id\":1}".getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		// En-têtes et début du corps envoyés, puis plus rien.
+		server.createContext("/stall", exchange -> {
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			out.write("{\"items\":[".getBytes(StandardCharsets.UTF_8));
+			out.flush();
+			try {
+				stop.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException ignored) {
+				Thread.currentThread().interrupt();
+			}
+			exchange.close();
+		});
+		server.start();
+		http = new HttpClients(Duration.ofSeconds(2), Duration.ofMillis(300));
+		client = new HttpRestClient(new ObjectMapper(), http, new SourcePolicy("", "localhost"));
+	}
+
+	@AfterEach
+	void shutdown() {
+		stop.countDown();
+		server.stop(0);
+		http.destroy();
+	}
+
+	@Test
+	void readsResponseBody() throws Exception {
+		try (InputStream in = client.fetch(Map.of("url", url("/ok")), Map.of()).stream()) {
+			assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}");
+		}
+	}
+
+	@Test
+	void failsWhenBodyStallsLongerThanReadTimeout() throws Exception {
+		long start = System.nanoTime();
+		try (InputStream in = client.fetch(Map.of("url", url("/stall")), Map.of()).stream()) {
+			assertThatThrownBy(in::readAllBytes).isInstanceOf(SocketTimeoutException.class);
+		}
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+	}
+
+	@Test
+	void rejectsInvalidHeadersBeforeSending() {
+		assertThatThrownBy(() -> client.fetch(Map.of("url", url("/ok"), "headers", Map.of("X-Retry", List.of(1))), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("X-Retry");
+		assertThatThrownBy(() -> client.fetch(Map.of("url", url("/ok"), "headers", Map.of("Host", "other")), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("not allowed");
+		assertThatThrownBy(() -> client.fetch(Map.of("url", url("/ok"), "headers", Map.of("content-length", "5")), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> client.fetch(Map.of("url", url("/ok"), "headers", "Accept: */*"), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private String url(String path) {
+		return "http://localhost:" + server.getAddress().getPort() + path;
+	}
+}
@@ -0,0 +1,114 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SoapBodyStreamTests {
+
+	private static final String SOAP_11 = "http://schemas.xmlsoap.org/soap/envelope/";
+
+	private HttpServer server;
+	private HttpClients http;
+	private SoapClient client;
+
+	@BeforeEach
+	void start() throws Exception {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		// Préfixes déclarés sur l'enveloppe seulement : le Body extrait doit les redéclarer.
+		respond("/orders", 200, "text/xml", "<soap:Envelope xmlns:soap=\"" + SOAP_11 + "\" xmlns:o=\"urn:orders\" xmlns:x=\"urn:ext\">"
+				+ "<soap:Header/><soap:Body><o:getOrdersResponse><o:order x:id=\"7\">Café</o:order></o:getOrdersResponse>"
+				+ "</soap:Body></soap:Envelope>");
+		respond("/fault", 500, "text/xml", "<soap:Envelope xmlns:soap=\"" + SOAP_11 + "\"><soap:Body><soap:Fault>"
+				+ "<faultcode>soap:Client</faultcode><faultstring>Order 42 not found</faultstring>"
+				+ "</soap:Fault></soap:Body></soap:Envelope>");
+		respond("/fault12", 500, "application/soap+xml", "<env:Envelope xmlns:env=\"http://www.w3.org/2003/05/soap-envelope\">"
+				+ "<env:Body><env:Fault><env:Code><env:Value>env:Sender</env:Value></env:Code>"
+				+ "<env:Reason><env:Text xml:lang=\"en\">Bad route</env:Text></env:Reason></env:Fault></env:Body></env:Envelope>");
+		respond("/empty", 200, "text/xml", "<soap:Envelope xmlns:soap=\"" + SOAP_11 + "\"><soap:Body/></soap:Envelope>");
+		server.start();
+		http = new HttpClients(Duration.ofSeconds(2), Duration.ofSeconds(5));
+		client = new SoapClient(http, new SourcePolicy("", "localhost"), true);
+	}
+
+	@AfterEach
+	void shutdown() {
+		server.stop(0);
+		http.destroy();
+	}
+
+	@Test
+	void redeclaresEnvelopeNamespacesOnBodyContent() throws Exception {
+		Element root = parse(client.fetch(config("/orders", true), Map.of()));
+
+		assertThat(root.getNamespaceURI()).isEqualTo("urn:orders");
+		assertThat(root.getLocalName()).isEqualTo("getOrdersResponse");
+		Element order = (Element) root.getElementsByTagNameNS("urn:orders", "order").item(0);
+		assertThat(order.getAttributeNS("urn:ext", "id")).isEqualTo("7");
+		assertThat(order.getTextContent()).isEqualTo("Café");
+	}
+
+	@Test
+	void domModeReturnsSameBodyContent() throws Exception {
+		Element root = parse(client.fetch(config("/orders", false), Map.of()));
+
+		assertThat(root.getNamespaceURI()).isEqualTo("urn:orders");
+		Element order = (Element) root.getElementsByTagNameNS("urn:orders", "order").item(0);
+		assertThat(order.getAttributeNS("urn:ext", "id")).isEqualTo("7");
+	}
+
+	@Test
+	void reportsFaultString() {
+		assertThatThrownBy(() -> client.fetch(config("/fault", true), Map.of()))
+				.hasMessageContaining("SOAP fault")
+				.hasMessageContaining("Order 42 not found");
+		assertThatThrownBy(() -> client.fetch(config("/fault12", true), Map.of()))
+				.hasMessageContaining("Bad route");
+	}
+
+	@Test
+	void emptyBodyGivesEmptyPayload() throws Exception {
+		try (InputStream in = client.fetch(config("/empty", true), Map.of()).stream()) {
+			assertThat(in.readAllBytes()).isEmpty();
+		}
+	}
+
+	private void respond(String path, int status, String contentType, String body) {
+		server.createContext(path, exchange -> {
+			exchange.getRequestBody().readAllBytes();
+			byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+			exchange.getResponseHeaders().add("Content-Type", contentType + "; charset=utf-8");
+			exchange.sendResponseHeaders(status, bytes.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(bytes);
+			}
+		});
+	}
+
+	private Map<String, Object> config(String path, boolean streaming) {
+		return Map.of("endpoint", "http://localhost:" + server.getAddress().getPort() + path,
+				"envelope", "<o:getOrders xmlns:o=\"urn:orders\"/>",
+				"streaming", streaming);
+	}
+
+	private static Element parse(RawPayload payload) throws Exception {
+		DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+		factory.setNamespaceAware(true);
+		try (InputStream in = payload.stream()) {
+			return factory.newDocumentBuilder().parse(in).getDocumentElement();
+		}
+	}
+}
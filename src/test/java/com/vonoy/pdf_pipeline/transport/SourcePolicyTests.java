@@ -0,0 +1,64 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SourcePolicyTests {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void fileTransportReadsOnlyUnderBaseDir() throws Exception {
+		Path base = Files.createDirectory(root.resolve("data"));
+		Files.writeString(base.resolve("rows.csv"), "id\n1\n");
+		Files.writeString(root.resolve("secret.txt"), "secret");
+		Files.createSymbolicLink(base.resolve("link.txt"), root.resolve("secret.txt"));
+		FileClient client = new FileClient(new SourcePolicy(base.toString(), ""));
+
+		try (InputStream in = client.fetch(Map.of("path", "rows.csv"), Map.of()).stream()) {
+			assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("id\n1\n");
+		}
+		assertThatThrownBy(() -> client.fetch(Map.of("path", "../secret.txt"), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("outside the allowed directory");
+		assertThatThrownBy(() -> client.fetch(Map.of("path", root.resolve("secret.txt").toString()), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> client.fetch(Map.of("path", "link.txt"), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	void fileTransportIsDisabledWithoutBaseDir() {
+		FileClient client = new FileClient(new SourcePolicy("", ""));
+		assertThatThrownBy(() -> client.fetch(Map.of("path", "/etc/passwd"), Map.of()))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("disabled");
+	}
+
+	@Test
+	void httpTransportsReachOnlyAllowedHosts() {
+		SourcePolicy policy = new SourcePolicy("", "erp.example.com, *.partner.net");
+
+		assertThat(policy.url("https://erp.example.com/api/orders/1").getHost()).isEqualTo("erp.example.com");
+		assertThat(policy.url("http://soap.partner.net:8080/ws").getPort()).isEqualTo(8080);
+		assertThatThrownBy(() -> policy.url("http://169.254.169.254/latest/meta-data"))
+				.isInstanceOf(IllegalArgumentException.class)
+				.hasMessageContaining("not allowed");
+		assertThatThrownBy(() -> policy.url("https://partner.net.evil.com/"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> policy.url("file:///etc/passwd"))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new SourcePolicy("", "").url("https://erp.example.com/"))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,192 @@
+package com.vonoy.pdf_pipeline.transport;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransportCacheTests {
+
+	private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+	@Test
+	void revalidatesExpiredEntryWithEtag() {
+		StubClient source = new StubClient(cfg -> {
+			Object etag = headers(cfg).get("If-None-Match");
+			return "\"v1\"".equals(etag)
+					? response("", Map.of("status", 304, "etag", "\"v1\""))
+					: response("{\"v\":1}", Map.of("status", 200, "etag", "\"v1\""));
+		});
+		TransportClient client = cache(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1)).wrap("rest", source);
+
+		assertThat(read(client.fetch(config("/a"), Map.of()))).isEqualTo("{\"v\":1}");
+		// ttl.rest = 0 : chaque lecture revalide, le 304 garde le corps en cache.
+		assertThat(read(client.fetch(config("/a"), Map.of()))).isEqualTo("{\"v\":1}");
+		assertThat(source.requests).hasSize(2);
+		assertThat(headers(source.requests.get(1))).containsEntry("If-None-Match", "\"v1\"");
+		assertThat(count("revalidated")).isEqualTo(1);
+	}
+
+	@Test
+	void honoursCacheControl() {
+		StubClient source = new StubClient(cfg -> switch (cfg.get("url").toString()) {
+			case "/fresh" -> response("fresh", Map.of("status", 200, "cacheControl", "public, max-age=60"));
+			case "/no-store" -> response("secret", Map.of("status", 200, "etag", "\"s\"", "cacheControl", "no-store"));
+			default -> response("plain", Map.of("status", 200));
+		});
+		TransportClient client = cache(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1)).wrap("rest", source);
+
+		for (int i = 0; i < 3; i++) {
+			assertThat(read(client.fetch(config("/fresh"), Map.of()))).isEqualTo("fresh");
+			assertThat(read(client.fetch(config("/no-store"), Map.of()))).isEqualTo("secret");
+			assertThat(read(client.fetch(config("/plain"), Map.of()))).isEqualTo("plain");
+		}
+		assertThat(source.count("/fresh")).isEqualTo(1);
+		assertThat(source.count("/no-store")).isEqualTo(3);
+		assertThat(source.count("/plain")).isEqualTo(3);
+		assertThat(headers(source.requests.get(source.requests.size() - 2))).doesNotContainKey("If-None-Match");
+	}
+
+	@Test
+	void streamsOversizedResponsesWithoutCachingThem() {
+		String big = "x".repeat(5000);
+		StubClient source = new StubClient(cfg -> response(big, Map.of("status", 200, "cacheControl", "max-age=60")));
+		TransportClient client = cache(DataSize.ofMegabytes(1), DataSize.ofBytes(1000)).wrap("rest", source);
+
+		RawPayload first = client.fetch(config("/big"), Map.of());
+		assertThat(first.stream()).isNotInstanceOf(ByteArrayInputStream.class);
+		assertThat(read(first)).isEqualTo(big);
+		assertThat(read(client.fetch(config("/big"), Map.of()))).isEqualTo(big);
+		assertThat(source.requests).hasSize(2);
+	}
+
+	@Test
+	void evictsLeastRecentlyUsedBeyondByteBound() {
+		StubClient source = new StubClient(cfg -> response("y".repeat(1000), Map.of()));
+		TransportClient client = cache(DataSize.ofBytes(2500), DataSize.ofMegabytes(1)).wrap("file", source);
+
+		client.fetch(config("a"), Map.of());
+		client.fetch(config("b"), Map.of());
+		client.fetch(config("a"), Map.of());   // a devient le plus récent
+		client.fetch(config("c"), Map.of());   // 3000 octets > 2500 : b sort
+		assertThat(source.requests).hasSize(3);
+
+		client.fetch(config("a"), Map.of());
+		client.fetch(config("c"), Map.of());
+		assertThat(source.requests).hasSize(3);
+		client.fetch(config("b"), Map.of());
+		assertThat(source.requests).hasSize(4);
+		assertThat(meters.get("pdf.transport.cache.size").gauge().value()).isLessThanOrEqualTo(2500);
+	}
+
+	@Test
+	void coalescesConcurrentIdenticalFetches() throws Exception {
+		CountDownLatch fetching = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		StubClient source = new StubClient(cfg -> {
+			fetching.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return response("<route/>", Map.of());
+		});
+		TransportClient client = cache(DataSize.ofMegabytes(1), DataSize.ofMegabytes(1)).wrap("soap", source);
+
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<String>> reads = new ArrayList<>();
+			reads.add(pool.submit(() -> read(client.fetch(config("/route"), Map.of()))));
+			fetching.await();
+			for (int i = 0; i < 3; i++) {
+				reads.add(pool.submit(() -> read(client.fetch(config("/route"), Map.of()))));
+			}
+			Thread.sleep(200);   // les trois lectures attendent la première
+			release.countDown();
+
+			for (Future<String> r : reads) assertThat(r.get(5, TimeUnit.SECONDS)).isEqualTo("<route/>");
+		} finally {
+			release.countDown();
+			pool.shutdownNow();
+		}
+		assertThat(source.requests).hasSize(1);
+		assertThat(count("coalesced")).isEqualTo(3);
+	}
+
+	private TransportCache cache(DataSize maxSize, DataSize maxEntrySize) {
+		return new TransportCache(new ObjectMapper(), meters, true, maxSize, maxEntrySize,
+				Duration.ZERO, Duration.ofMinutes(5), Duration.ofMinutes(1));
+	}
+
+	private double count(String result) {
+		return meters.get("pdf.transport.cache").tag("result", result).counter().count();
+	}
+
+	private static Map<String, Object> config(String url) {
+		return Map.of("url", url, "path", url);
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> headers(Map<String, Object> cfg) {
+		return (Map<String, Object>) cfg.getOrDefault("headers", Map.of());
+	}
+
+	private static RawPayload response(String body, Map<String, Object> meta) {
+		// Pas un ByteArrayInputStream : distingue un flux amont d'un corps servi par le cache.
+		InputStream in = new BufferedInputStream(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+		return new RawPayload(in, "application/json", new HashMap<>(meta));
+	}
+
+	private static String read(RawPayload payload) {
+		try (InputStream in = payload.stream()) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Source amont scriptée qui garde la config de chaque requête reçue. */
+	private static final class StubClient implements TransportClient {
+		final List<Map<String, Object>> requests = Collections.synchronizedList(new ArrayList<>());
+		private final Function<Map<String, Object>, RawPayload> responder;
+
+		StubClient(Function<Map<String, Object>, RawPayload> responder) {
+			this.responder = responder;
+		}
+
+		@Override
+		public boolean supports(String type) {
+			return true;
+		}
+
+		@Override
+		public RawPayload fetch(Map<String, Object> config, Map<String, Object> params) {
+			requests.add(config);
+			return responder.apply(config);
+		}
+
+		long count(String url) {
+			return requests.stream().filter(r -> url.equals(r.get("url"))).count();
+		}
+	}
+}